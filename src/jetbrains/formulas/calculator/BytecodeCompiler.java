@@ -0,0 +1,247 @@
+package jetbrains.formulas.calculator;
+
+import jetbrains.formulas.calculator.functions.FunctionRepository;
+import jetbrains.formulas.parser.nodes.TerminalNode;
+import jetbrains.formulas.parser.nodes.TreeNode;
+import jetbrains.table.structures.CellPosition;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static jetbrains.formulas.calculator.ClassFileWriter.*;
+import static jetbrains.formulas.parser.LexicalAnalyzer.TokenType.*;
+
+public class BytecodeCompiler {
+    private static final String CLASS_NAME = "jetbrains/formulas/calculator/CompiledFormula";
+    private static final String OBJECT_CLASS_NAME = "java/lang/Object";
+    private static final String MATH_CLASS_NAME = "java/lang/Math";
+    private static final String FORMULA_CALCULATOR_CLASS_NAME = "jetbrains/formulas/calculator/FormulaCalculator";
+    private static final String DOUBLE_EVALUATOR_CLASS_NAME = "jetbrains/formulas/calculator/DoubleEvaluator";
+    private static final String DOUBLE_EVALUATORS_DESCRIPTOR = "[Ljetbrains/formulas/calculator/DoubleEvaluator;";
+    private static final String EVAL_DESCRIPTOR = "(Ljetbrains/formulas/calculator/ValueSource;)D";
+    private static final String GET_CELL_VALUE_DESCRIPTOR = "(IILjetbrains/formulas/calculator/ValueSource;)D";
+    private static final String DELEGATES_FIELD_NAME = "delegates";
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private static final Map<String, String> UNARY_FUNCTION_NAME_TO_MATH_METHOD = Map.of(
+            "sin", "sin",
+            "cos", "cos",
+            "tan", "tan",
+            "ln", "log",
+            "exp", "exp",
+            "abs", "abs"
+    );
+    private static final Map<String, String> BINARY_FUNCTION_NAME_TO_MATH_METHOD = Map.of(
+            "pow", "pow"
+    );
+
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int AALOAD = 0x32;
+    private static final int DADD = 0x63;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+
+    private final ClassFileWriter classFileWriter =
+            new ClassFileWriter(CLASS_NAME, OBJECT_CLASS_NAME, DOUBLE_EVALUATOR_CLASS_NAME);
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<DoubleEvaluator> delegates = new ArrayList<>();
+    private int stackSize = 0;
+    private int maxStackSize = 0;
+
+    private BytecodeCompiler() {
+    }
+
+    public static DoubleEvaluator compile(TreeNode treeNode) {
+        DoubleEvaluator compiledEvaluator = tryCompile(treeNode);
+        return compiledEvaluator != null ? compiledEvaluator : treeNode.compile();
+    }
+
+    public static DoubleEvaluator tryCompile(TreeNode treeNode) {
+        try {
+            BytecodeCompiler bytecodeCompiler = new BytecodeCompiler();
+            bytecodeCompiler.writeNode(treeNode);
+            bytecodeCompiler.writeInstruction(DRETURN, -2);
+            if (bytecodeCompiler.code.size() > MAX_CODE_LENGTH) {
+                return null;
+            }
+            return bytecodeCompiler.defineEvaluator();
+        } catch (ClassFileOverflowException | ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private void writeNode(TreeNode treeNode) {
+        switch (treeNode.formulaCalculator) {
+            case SUM -> writeSum(treeNode);
+            case PRODUCT -> writeProduct(treeNode);
+            case FUNCTION -> writeFunction(treeNode);
+            case NUMBER -> writeDouble((double) ((TerminalNode) treeNode).token.data);
+            case CELL -> writeCellValue((CellPosition) ((TerminalNode) treeNode).token.data);
+            case default -> writeDelegate(treeNode.compile());
+        }
+    }
+
+    private void writeSum(TreeNode treeNode) {
+        writeInstruction(DCONST_0, 2);
+        boolean isMinus = false;
+        for (TreeNode child : treeNode.children) {
+            if (child instanceof TerminalNode && ((TerminalNode) child).token.tokenType == MINUS) {
+                isMinus = true;
+            } else {
+                writeNode(child);
+                if (isMinus) {
+                    writeInstruction(DNEG, 0);
+                }
+                writeInstruction(DADD, -2);
+                isMinus = false;
+            }
+        }
+    }
+
+    private void writeProduct(TreeNode treeNode) {
+        writeInstruction(DCONST_1, 2);
+        boolean isMul = true;
+        for (TreeNode child : treeNode.children) {
+            if (child instanceof TerminalNode && ((TerminalNode) child).token.tokenType == DIV) {
+                isMul = false;
+            } else if (child instanceof TerminalNode && ((TerminalNode) child).token.tokenType == MUL) {
+                isMul = true;
+            } else {
+                writeNode(child);
+                writeInstruction(isMul ? DMUL : DDIV, -2);
+            }
+        }
+    }
+
+    private void writeFunction(TreeNode treeNode) {
+        String functionName = (String) ((TerminalNode) treeNode.children.get(0)).token.data;
+        List<TreeNode> paramNodes = treeNode.children.get(1).children;
+        boolean hasCellDiapasonParams = paramNodes.stream()
+                .anyMatch(paramNode -> paramNode.formulaCalculator == FormulaCalculator.CELL_DIAPASON);
+        String mathMethod = null;
+        String mathMethodDescriptor = null;
+        if (!hasCellDiapasonParams && paramNodes.size() == 1 && FunctionRepository.getUnaryFunction(functionName) != null) {
+            mathMethod = UNARY_FUNCTION_NAME_TO_MATH_METHOD.get(functionName);
+            mathMethodDescriptor = "(D)D";
+        } else if (!hasCellDiapasonParams && paramNodes.size() == 2 && FunctionRepository.getBinaryFunction(functionName) != null) {
+            mathMethod = BINARY_FUNCTION_NAME_TO_MATH_METHOD.get(functionName);
+            mathMethodDescriptor = "(DD)D";
+        }
+        if (mathMethod == null) {
+            writeDelegate(treeNode.compile());
+            return;
+        }
+        for (TreeNode paramNode : paramNodes) {
+            writeNode(paramNode);
+        }
+        int methodIndex = classFileWriter.addMethodref(MATH_CLASS_NAME, mathMethod, mathMethodDescriptor);
+        writeInstruction(INVOKESTATIC, 2 - 2 * paramNodes.size());
+        writeShort(methodIndex);
+    }
+
+    private void writeDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            writeInstruction(DCONST_0, 2);
+        } else if (value == 1.0) {
+            writeInstruction(DCONST_1, 2);
+        } else {
+            writeInstruction(LDC2_W, 2);
+            writeShort(classFileWriter.addDouble(value));
+        }
+    }
+
+    private void writeCellValue(CellPosition cellPosition) {
+        writeInt(cellPosition.row);
+        writeInt(cellPosition.column);
+        writeInstruction(ALOAD_1, 1);
+        int methodIndex = classFileWriter.addMethodref(FORMULA_CALCULATOR_CLASS_NAME, "getCellValueFrom", GET_CELL_VALUE_DESCRIPTOR);
+        writeInstruction(INVOKESTATIC, -1);
+        writeShort(methodIndex);
+    }
+
+    private void writeDelegate(DoubleEvaluator delegate) {
+        writeInstruction(ALOAD_0, 1);
+        writeInstruction(GETFIELD, 0);
+        writeShort(classFileWriter.addFieldref(CLASS_NAME, DELEGATES_FIELD_NAME, DOUBLE_EVALUATORS_DESCRIPTOR));
+        writeInt(delegates.size());
+        writeInstruction(AALOAD, -1);
+        writeInstruction(ALOAD_1, 1);
+        writeInstruction(INVOKEINTERFACE, 0);
+        writeShort(classFileWriter.addInterfaceMethodref(DOUBLE_EVALUATOR_CLASS_NAME, "eval", EVAL_DESCRIPTOR));
+        code.write(2);
+        code.write(0);
+        delegates.add(delegate);
+    }
+
+    private void writeInt(int value) {
+        if (-1 <= value && value <= 5) {
+            writeInstruction(ICONST_0 + value, 1);
+        } else if (Byte.MIN_VALUE <= value && value <= Byte.MAX_VALUE) {
+            writeInstruction(BIPUSH, 1);
+            code.write(value);
+        } else if (Short.MIN_VALUE <= value && value <= Short.MAX_VALUE) {
+            writeInstruction(SIPUSH, 1);
+            writeShort(value);
+        } else {
+            writeInstruction(LDC_W, 1);
+            writeShort(classFileWriter.addInteger(value));
+        }
+    }
+
+    private void writeInstruction(int opcode, int stackSizeChange) {
+        if (code.size() > MAX_CODE_LENGTH) {
+            throw new ClassFileOverflowException("Compiled formula code is too large.");
+        }
+        code.write(opcode);
+        stackSize += stackSizeChange;
+        maxStackSize = Math.max(maxStackSize, stackSize);
+    }
+
+    private void writeShort(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private DoubleEvaluator defineEvaluator() throws ReflectiveOperationException {
+        byte[] evalCode = code.toByteArray();
+        classFileWriter.addField(ACC_PRIVATE | ACC_FINAL, DELEGATES_FIELD_NAME, DOUBLE_EVALUATORS_DESCRIPTOR);
+        classFileWriter.addMethod(ACC_PUBLIC, "<init>", "(" + DOUBLE_EVALUATORS_DESCRIPTOR + ")V", 2, 2, getConstructorCode());
+        classFileWriter.addMethod(ACC_PUBLIC | ACC_FINAL, "eval", EVAL_DESCRIPTOR, maxStackSize, 2, evalCode);
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFileWriter.toByteArray(), true);
+        return (DoubleEvaluator) lookup.lookupClass()
+                .getConstructor(DoubleEvaluator[].class)
+                .newInstance((Object) delegates.toArray(new DoubleEvaluator[0]));
+    }
+
+    private byte[] getConstructorCode() {
+        code.reset();
+        code.write(ALOAD_0);
+        code.write(INVOKESPECIAL);
+        writeShort(classFileWriter.addMethodref(OBJECT_CLASS_NAME, "<init>", "()V"));
+        code.write(ALOAD_0);
+        code.write(ALOAD_1);
+        code.write(PUTFIELD);
+        writeShort(classFileWriter.addFieldref(CLASS_NAME, DELEGATES_FIELD_NAME, DOUBLE_EVALUATORS_DESCRIPTOR));
+        code.write(RETURN);
+        return code.toByteArray();
+    }
+}
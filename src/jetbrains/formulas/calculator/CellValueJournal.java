@@ -0,0 +1,55 @@
+package jetbrains.formulas.calculator;
+
+public class CellValueJournal {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final int[] rows;
+    private final int[] columns;
+    private final double[] oldValues;
+    private final double[] newValues;
+    private long size = 0;
+
+    public CellValueJournal() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CellValueJournal(int capacity) {
+        rows = new int[capacity];
+        columns = new int[capacity];
+        oldValues = new double[capacity];
+        newValues = new double[capacity];
+    }
+
+    public void add(int row, int column, double oldValue, double newValue) {
+        int id = (int) (size % rows.length);
+        rows[id] = row;
+        columns[id] = column;
+        oldValues[id] = oldValue;
+        newValues[id] = newValue;
+        size++;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isAvailable(long position) {
+        return size - position <= rows.length;
+    }
+
+    public int getRow(long position) {
+        return rows[(int) (position % rows.length)];
+    }
+
+    public int getColumn(long position) {
+        return columns[(int) (position % rows.length)];
+    }
+
+    public double getOldValue(long position) {
+        return oldValues[(int) (position % rows.length)];
+    }
+
+    public double getNewValue(long position) {
+        return newValues[(int) (position % rows.length)];
+    }
+}
@@ -0,0 +1,207 @@
+package jetbrains.formulas.calculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int JAVA_17_MAJOR_VERSION = 61;
+    private static final int MAX_CONSTANT_POOL_SIZE = 0xFFFF;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private final Map<String, Integer> constantToIndex = new HashMap<>();
+    private int constantPoolSize = 1;
+
+    private final ByteArrayOutputStream fieldsBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(fieldsBytes);
+    private int fieldCount = 0;
+
+    private final ByteArrayOutputStream methodsBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodsBytes);
+    private int methodCount = 0;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int interfaceClass;
+
+    ClassFileWriter(String className, String superClassName, String interfaceName) {
+        thisClass = addClass(className);
+        superClass = addClass(superClassName);
+        interfaceClass = addClass(interfaceName);
+    }
+
+    int addInteger(int value) {
+        return addConstant("I" + value, constantPool -> {
+            constantPool.writeByte(CONSTANT_INTEGER);
+            constantPool.writeInt(value);
+        }, 1);
+    }
+
+    int addDouble(double value) {
+        return addConstant("D" + Double.doubleToRawLongBits(value), constantPool -> {
+            constantPool.writeByte(CONSTANT_DOUBLE);
+            constantPool.writeDouble(value);
+        }, 2);
+    }
+
+    int addFieldref(String owner, String name, String descriptor) {
+        return addMemberref(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int addMethodref(String owner, String name, String descriptor) {
+        return addMemberref(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int addInterfaceMethodref(String owner, String name, String descriptor) {
+        return addMemberref(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    void addField(int access, String name, String descriptor) {
+        int nameIndex = addUtf8(name);
+        int descriptorIndex = addUtf8(descriptor);
+        write(() -> {
+            fields.writeShort(access);
+            fields.writeShort(nameIndex);
+            fields.writeShort(descriptorIndex);
+            fields.writeShort(0);
+        });
+        fieldCount++;
+    }
+
+    void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        int nameIndex = addUtf8(name);
+        int descriptorIndex = addUtf8(descriptor);
+        int codeAttributeIndex = addUtf8("Code");
+        write(() -> {
+            methods.writeShort(access);
+            methods.writeShort(nameIndex);
+            methods.writeShort(descriptorIndex);
+            methods.writeShort(1);
+            methods.writeShort(codeAttributeIndex);
+            methods.writeInt(12 + code.length);
+            methods.writeShort(maxStack);
+            methods.writeShort(maxLocals);
+            methods.writeInt(code.length);
+            methods.write(code);
+            methods.writeShort(0);
+            methods.writeShort(0);
+        });
+        methodCount++;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+        DataOutputStream classFile = new DataOutputStream(classBytes);
+        write(() -> {
+            classFile.writeInt(MAGIC);
+            classFile.writeShort(0);
+            classFile.writeShort(JAVA_17_MAJOR_VERSION);
+            classFile.writeShort(constantPoolSize);
+            constantPoolBytes.writeTo(classFile);
+            classFile.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            classFile.writeShort(thisClass);
+            classFile.writeShort(superClass);
+            classFile.writeShort(1);
+            classFile.writeShort(interfaceClass);
+            classFile.writeShort(fieldCount);
+            fieldsBytes.writeTo(classFile);
+            classFile.writeShort(methodCount);
+            methodsBytes.writeTo(classFile);
+            classFile.writeShort(0);
+        });
+        return classBytes.toByteArray();
+    }
+
+    private int addUtf8(String value) {
+        return addConstant("U" + value, constantPool -> {
+            constantPool.writeByte(CONSTANT_UTF8);
+            constantPool.writeUTF(value);
+        }, 1);
+    }
+
+    private int addClass(String name) {
+        int nameIndex = addUtf8(name);
+        return addConstant("C" + name, constantPool -> {
+            constantPool.writeByte(CONSTANT_CLASS);
+            constantPool.writeShort(nameIndex);
+        }, 1);
+    }
+
+    private int addNameAndType(String name, String descriptor) {
+        int nameIndex = addUtf8(name);
+        int descriptorIndex = addUtf8(descriptor);
+        return addConstant("N" + name + ":" + descriptor, constantPool -> {
+            constantPool.writeByte(CONSTANT_NAME_AND_TYPE);
+            constantPool.writeShort(nameIndex);
+            constantPool.writeShort(descriptorIndex);
+        }, 1);
+    }
+
+    private int addMemberref(int tag, String owner, String name, String descriptor) {
+        int classIndex = addClass(owner);
+        int nameAndTypeIndex = addNameAndType(name, descriptor);
+        return addConstant("M" + tag + owner + "." + name + ":" + descriptor, constantPool -> {
+            constantPool.writeByte(tag);
+            constantPool.writeShort(classIndex);
+            constantPool.writeShort(nameAndTypeIndex);
+        }, 1);
+    }
+
+    private int addConstant(String key, ConstantWriter constantWriter, int size) {
+        Integer index = constantToIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        if (constantPoolSize + size > MAX_CONSTANT_POOL_SIZE) {
+            throw new ClassFileOverflowException("Constant pool is too large.");
+        }
+        write(() -> constantWriter.write(constantPool));
+        index = constantPoolSize;
+        constantPoolSize += size;
+        constantToIndex.put(key, index);
+        return index;
+    }
+
+    private static void write(IOAction ioAction) {
+        try {
+            ioAction.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static class ClassFileOverflowException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ClassFileOverflowException(String message) {
+            super(message);
+        }
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream constantPool) throws IOException;
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,8 @@
+package jetbrains.formulas.calculator;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+
+public interface DoubleEvaluator {
+    double eval(ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException;
+}
@@ -2,7 +2,10 @@ package jetbrains.formulas.calculator;
 
 import jetbrains.exceptions.FormulaCalculatorException;
 import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.formulas.calculator.functions.CellRangeView;
 import jetbrains.formulas.calculator.functions.FunctionRepository;
+import jetbrains.formulas.calculator.functions.IncrementalRangeEvaluator;
+import jetbrains.formulas.calculator.functions.RangeFunction;
 import jetbrains.formulas.parser.nodes.TerminalNode;
 import jetbrains.formulas.parser.nodes.TreeNode;
 import jetbrains.table.TableGenerator;
@@ -12,6 +15,8 @@ import jetbrains.table.structures.CellPosition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 import static jetbrains.formulas.parser.LexicalAnalyzer.TokenType.*;
 
@@ -32,6 +37,31 @@ public enum FormulaCalculator {
             }
             return sum;
         }
+
+        @Override
+        public DoubleEvaluator compile(TreeNode treeNode) {
+            List<DoubleEvaluator> childEvaluators = new ArrayList<>();
+            List<Double> childSigns = new ArrayList<>();
+            int k = 1;
+            for (TreeNode child : treeNode.children) {
+                if (child instanceof TerminalNode && ((TerminalNode) child).token.tokenType == MINUS) {
+                    k = -1;
+                } else {
+                    childEvaluators.add(child.compile());
+                    childSigns.add((double) k);
+                    k = 1;
+                }
+            }
+            DoubleEvaluator[] evaluators = childEvaluators.toArray(new DoubleEvaluator[0]);
+            double[] signs = childSigns.stream().mapToDouble(Double::doubleValue).toArray();
+            return valueSource -> {
+                double sum = 0;
+                for (int i = 0; i < evaluators.length; i++) {
+                    sum += signs[i] * evaluators[i].eval(valueSource);
+                }
+                return sum;
+            };
+        }
     },
     PRODUCT {
         @Override
@@ -54,6 +84,40 @@ public enum FormulaCalculator {
             }
             return product;
         }
+
+        @Override
+        public DoubleEvaluator compile(TreeNode treeNode) {
+            List<DoubleEvaluator> childEvaluators = new ArrayList<>();
+            List<Boolean> childIsMuls = new ArrayList<>();
+            boolean isMul = true;
+            for (TreeNode child : treeNode.children) {
+                if (child instanceof TerminalNode && ((TerminalNode) child).token.tokenType == DIV) {
+                    isMul = false;
+                } else if (child instanceof TerminalNode && ((TerminalNode) child).token.tokenType == MUL) {
+                    isMul = true;
+                } else {
+                    childEvaluators.add(child.compile());
+                    childIsMuls.add(isMul);
+                }
+            }
+            DoubleEvaluator[] evaluators = childEvaluators.toArray(new DoubleEvaluator[0]);
+            boolean[] isMuls = new boolean[evaluators.length];
+            for (int i = 0; i < isMuls.length; i++) {
+                isMuls[i] = childIsMuls.get(i);
+            }
+            return valueSource -> {
+                double product = 1;
+                for (int i = 0; i < evaluators.length; i++) {
+                    double childValue = evaluators[i].eval(valueSource);
+                    if (isMuls[i]) {
+                        product *= childValue;
+                    } else {
+                        product /= childValue;
+                    }
+                }
+                return product;
+            };
+        }
     },
     FUNCTION {
         @Override
@@ -70,12 +134,71 @@ public enum FormulaCalculator {
             functionWithParameterLimits.checkParams(paramValues);
             return functionWithParameterLimits.function.apply(paramValues);
         }
+
+        @Override
+        public DoubleEvaluator compile(TreeNode treeNode) {
+            String functionName = (String) ((TerminalNode) treeNode.children.get(0)).token.data;
+            List<TreeNode> paramNodes = treeNode.children.get(1).children;
+            boolean hasCellDiapasonParams = paramNodes.stream().anyMatch(paramNode -> paramNode.formulaCalculator == CELL_DIAPASON);
+            DoubleUnaryOperator unaryFunction = FunctionRepository.getUnaryFunction(functionName);
+            if (unaryFunction != null && paramNodes.size() == 1 && !hasCellDiapasonParams) {
+                DoubleEvaluator paramEvaluator = paramNodes.get(0).compile();
+                return valueSource -> unaryFunction.applyAsDouble(paramEvaluator.eval(valueSource));
+            }
+            DoubleBinaryOperator binaryFunction = FunctionRepository.getBinaryFunction(functionName);
+            if (binaryFunction != null && paramNodes.size() == 2 && !hasCellDiapasonParams) {
+                DoubleEvaluator firstParamEvaluator = paramNodes.get(0).compile();
+                DoubleEvaluator secondParamEvaluator = paramNodes.get(1).compile();
+                return valueSource -> binaryFunction.applyAsDouble(firstParamEvaluator.eval(valueSource), secondParamEvaluator.eval(valueSource));
+            }
+
+            DoubleEvaluator[] paramEvaluators = new DoubleEvaluator[paramNodes.size()];
+            CellDiapason[] cellDiapasons = new CellDiapason[paramNodes.size()];
+            List<Object> paramSamples = new ArrayList<>();
+            for (int i = 0; i < paramEvaluators.length; i++) {
+                if (paramNodes.get(i).formulaCalculator != CELL_DIAPASON) {
+                    paramEvaluators[i] = paramNodes.get(i).compile();
+                    paramSamples.add(0.0);
+                } else {
+                    cellDiapasons[i] = (CellDiapason) ((TerminalNode) paramNodes.get(i)).token.data;
+                    paramSamples.add(new double[0][0]);
+                }
+            }
+            FunctionRepository.FunctionWithParameterLimits functionWithParameterLimits =
+                    FunctionRepository.getFunctionWithParamLimits(functionName);
+            RangeFunction rangeFunction = FunctionRepository.getRangeFunction(functionName);
+            if (rangeFunction != null && functionWithParameterLimits.isValidParams(paramSamples)) {
+                CellRangeView cellRangeView = new CellRangeView(cellDiapasons, paramEvaluators);
+                if (IncrementalRangeEvaluator.isSupported(rangeFunction, cellRangeView)) {
+                    return new IncrementalRangeEvaluator(rangeFunction, cellRangeView);
+                }
+                return valueSource -> rangeFunction.apply(cellRangeView, valueSource);
+            }
+            return valueSource -> {
+                List<Object> paramValues = new ArrayList<>();
+                for (int i = 0; i < paramEvaluators.length; i++) {
+                    if (paramEvaluators[i] == null) {
+                        paramValues.add(paramNodes.get(i).calculate(valueSource::getValue));
+                    } else {
+                        paramValues.add(paramEvaluators[i].eval(valueSource));
+                    }
+                }
+                functionWithParameterLimits.checkParams(paramValues);
+                return functionWithParameterLimits.function.apply(paramValues);
+            };
+        }
     },
     NUMBER {
         @Override
         public Object calculate(TreeNode treeNode, BiFunction<Integer, Integer, Double> tableValuesFunction) {
             return ((TerminalNode) treeNode).token.data;
         }
+
+        @Override
+        public DoubleEvaluator compile(TreeNode treeNode) {
+            double value = (double) ((TerminalNode) treeNode).token.data;
+            return valueSource -> value;
+        }
     },
     CELL {
         @Override
@@ -83,6 +206,14 @@ public enum FormulaCalculator {
             CellPosition cellPosition = (CellPosition) ((TerminalNode) treeNode).token.data;
             return getCellValue(cellPosition.row, cellPosition.column, tableValuesFunction);
         }
+
+        @Override
+        public DoubleEvaluator compile(TreeNode treeNode) {
+            CellPosition cellPosition = (CellPosition) ((TerminalNode) treeNode).token.data;
+            int row = cellPosition.row;
+            int column = cellPosition.column;
+            return valueSource -> getCellValueFrom(row, column, valueSource);
+        }
     },
     CELL_DIAPASON {
         @Override
@@ -106,16 +237,37 @@ public enum FormulaCalculator {
             }
             return cellDiapasonValues;
         }
+
+        @Override
+        public DoubleEvaluator compile(TreeNode treeNode) {
+            return valueSource -> {
+                throw new FormulaCalculatorException("Cell diapason can be used only as a function parameter.");
+            };
+        }
     };
 
     public double getCellValue(int row, int column, BiFunction<Integer, Integer, Double> tableValuesFunction) throws FormulaCalculatorException {
         try {
             return tableValuesFunction.apply(row, column);
         } catch (Exception e) {
-            String cellName = TableGenerator.getColumnNameById(column - 1) + (row + 1);
-            throw new FormulaCalculatorException("Cell " + cellName + " is outside the table.");
+            throw getCellOutsideTableException(row, column);
         }
     }
 
+    public static double getCellValueFrom(int row, int column, ValueSource valueSource) throws FormulaCalculatorException {
+        try {
+            return valueSource.getValue(row, column);
+        } catch (Exception e) {
+            throw getCellOutsideTableException(row, column);
+        }
+    }
+
+    private static FormulaCalculatorException getCellOutsideTableException(int row, int column) {
+        String cellName = TableGenerator.getColumnNameById(column - 1) + (row + 1);
+        return new FormulaCalculatorException("Cell " + cellName + " is outside the table.");
+    }
+
     abstract public Object calculate(TreeNode treeNode, BiFunction<Integer, Integer, Double> tableValuesFunction) throws FunctionParameterException, FormulaCalculatorException;
+
+    abstract public DoubleEvaluator compile(TreeNode treeNode);
 }
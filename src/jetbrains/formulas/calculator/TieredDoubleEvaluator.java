@@ -0,0 +1,41 @@
+package jetbrains.formulas.calculator;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.formulas.parser.nodes.TreeNode;
+
+public class TieredDoubleEvaluator implements DoubleEvaluator {
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    private final TreeNode treeNode;
+    private final int compileThreshold;
+    private DoubleEvaluator evaluator;
+    private int evaluationCount = 0;
+    private boolean isCompiled = false;
+
+    public TieredDoubleEvaluator(TreeNode treeNode) {
+        this(treeNode, DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public TieredDoubleEvaluator(TreeNode treeNode, int compileThreshold) {
+        this.treeNode = treeNode;
+        this.compileThreshold = compileThreshold;
+        this.evaluator = treeNode.compile();
+    }
+
+    @Override
+    public double eval(ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+        if (evaluationCount < compileThreshold && ++evaluationCount == compileThreshold) {
+            DoubleEvaluator compiledEvaluator = BytecodeCompiler.tryCompile(treeNode);
+            if (compiledEvaluator != null) {
+                evaluator = compiledEvaluator;
+                isCompiled = true;
+            }
+        }
+        return evaluator.eval(valueSource);
+    }
+
+    public boolean isCompiled() {
+        return isCompiled;
+    }
+}
@@ -0,0 +1,15 @@
+package jetbrains.formulas.calculator;
+
+import jetbrains.formulas.calculator.indexes.ColumnIndexes;
+
+public interface ValueSource {
+    double getValue(int row, int column);
+
+    default CellValueJournal getCellValueJournal() {
+        return null;
+    }
+
+    default ColumnIndexes getColumnIndexes() {
+        return null;
+    }
+}
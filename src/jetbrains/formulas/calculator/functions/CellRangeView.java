@@ -0,0 +1,97 @@
+package jetbrains.formulas.calculator.functions;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.formulas.calculator.DoubleEvaluator;
+import jetbrains.formulas.calculator.FormulaCalculator;
+import jetbrains.formulas.calculator.ValueSource;
+import jetbrains.table.structures.CellDiapason;
+
+public class CellRangeView {
+    private final int[] fromRows;
+    private final int[] fromColumns;
+    private final int[] toRows;
+    private final int[] toColumns;
+    private final DoubleEvaluator[] paramEvaluators;
+    private final int size;
+
+    public CellRangeView(CellDiapason[] cellDiapasons, DoubleEvaluator[] paramEvaluators) {
+        int paramCount = paramEvaluators.length;
+        this.fromRows = new int[paramCount];
+        this.fromColumns = new int[paramCount];
+        this.toRows = new int[paramCount];
+        this.toColumns = new int[paramCount];
+        this.paramEvaluators = paramEvaluators;
+        int size = 0;
+        for (int paramId = 0; paramId < paramCount; paramId++) {
+            if (paramEvaluators[paramId] == null) {
+                CellDiapason cellDiapason = cellDiapasons[paramId];
+                fromRows[paramId] = cellDiapason.fromCellPosition.row;
+                fromColumns[paramId] = cellDiapason.fromCellPosition.column;
+                toRows[paramId] = cellDiapason.toCellPosition.row;
+                toColumns[paramId] = cellDiapason.toCellPosition.column;
+            }
+            size += getSize(paramId);
+        }
+        this.size = size;
+    }
+
+    public int getParamCount() {
+        return paramEvaluators.length;
+    }
+
+    public boolean isCellDiapason(int paramId) {
+        return paramEvaluators[paramId] == null;
+    }
+
+    public double getParamValue(int paramId, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+        return paramEvaluators[paramId].eval(valueSource);
+    }
+
+    public int getFromRow(int paramId) {
+        return fromRows[paramId];
+    }
+
+    public int getFromColumn(int paramId) {
+        return fromColumns[paramId];
+    }
+
+    public int getToRow(int paramId) {
+        return toRows[paramId];
+    }
+
+    public int getToColumn(int paramId) {
+        return toColumns[paramId];
+    }
+
+    public boolean contains(int paramId, int row, int column) {
+        return isCellDiapason(paramId) &&
+                fromRows[paramId] <= row && row <= toRows[paramId] &&
+                fromColumns[paramId] <= column && column <= toColumns[paramId];
+    }
+
+    public int getSize(int paramId) {
+        if (!isCellDiapason(paramId)) {
+            return 1;
+        }
+        return (toRows[paramId] - fromRows[paramId] + 1) * (toColumns[paramId] - fromColumns[paramId] + 1);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void checkInsideTable(int paramId, ValueSource valueSource) throws FormulaCalculatorException {
+        try {
+            valueSource.getValue(fromRows[paramId], fromColumns[paramId]);
+            valueSource.getValue(toRows[paramId], toColumns[paramId]);
+            return;
+        } catch (Exception ignored) {
+        }
+        for (int row = fromRows[paramId]; row <= toRows[paramId]; row++) {
+            for (int column = fromColumns[paramId]; column <= toColumns[paramId]; column++) {
+                FormulaCalculator.getCellValueFrom(row, column, valueSource);
+            }
+        }
+    }
+}
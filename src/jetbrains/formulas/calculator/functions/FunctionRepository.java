@@ -7,11 +7,31 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
-import java.util.stream.IntStream;
 
 public class FunctionRepository {
     private static final Map<String, FunctionWithParameterLimits> FUNCTION_NAME_TO_FUNCTION_WITH_PARAM_LIMITS = new HashMap<>();
+    private static final Map<String, DoubleUnaryOperator> FUNCTION_NAME_TO_UNARY_FUNCTION = Map.of(
+            "sin", Math::sin,
+            "cos", Math::cos,
+            "tan", Math::tan,
+            "ln", Math::log,
+            "exp", Math::exp,
+            "abs", Math::abs
+    );
+    private static final Map<String, DoubleBinaryOperator> FUNCTION_NAME_TO_BINARY_FUNCTION = Map.of(
+            "pow", Math::pow
+    );
+    private static final Map<String, RangeFunction> FUNCTION_NAME_TO_RANGE_FUNCTION = Map.of(
+            "min", RangeFunction.MIN,
+            "max", RangeFunction.MAX,
+            "sum", RangeFunction.SUM,
+            "mean", RangeFunction.MEAN,
+            "std", RangeFunction.STD,
+            "cor", RangeFunction.COR
+    );
 
     static {
         FUNCTION_NAME_TO_FUNCTION_WITH_PARAM_LIMITS.put(
@@ -118,6 +138,18 @@ public class FunctionRepository {
         return FUNCTION_NAME_TO_FUNCTION_WITH_PARAM_LIMITS.get(functionName);
     }
 
+    public static DoubleUnaryOperator getUnaryFunction(String functionName) {
+        return FUNCTION_NAME_TO_UNARY_FUNCTION.get(functionName);
+    }
+
+    public static DoubleBinaryOperator getBinaryFunction(String functionName) {
+        return FUNCTION_NAME_TO_BINARY_FUNCTION.get(functionName);
+    }
+
+    public static RangeFunction getRangeFunction(String functionName) {
+        return FUNCTION_NAME_TO_RANGE_FUNCTION.get(functionName);
+    }
+
     private static double sin(List<Object> params) {
         return Math.sin((double) params.get(0));
     }
@@ -163,10 +195,16 @@ public class FunctionRepository {
     }
 
     private static double std(List<Object> params) {
-        double mean = mean(params);
         List<Double> xs = getDoubleValuesFromParams(params);
-        double stdSum = xs.stream().reduce(0.0, (a, b) -> (a + (b - mean) * (b - mean)));
-        return Math.sqrt(stdSum / xs.size());
+        double mean = 0;
+        double deviationSquareSum = 0;
+        for (int i = 0; i < xs.size(); i++) {
+            double x = xs.get(i);
+            double delta = x - mean;
+            mean += delta / (i + 1);
+            deviationSquareSum += delta * (x - mean);
+        }
+        return Math.sqrt(deviationSquareSum / xs.size());
     }
 
     private static double cor(List<Object> params) {
@@ -175,14 +213,23 @@ public class FunctionRepository {
         if (xs.size() != ys.size()) {
             return 0.0;
         }
-        double xyMean = IntStream.range(0, xs.size()).mapToDouble(i -> xs.get(i) * ys.get(i)).sum() / xs.size();
-
-        double xMean = mean(List.of(params.get(0)));
-        double yMean = mean(List.of(params.get(1)));
-        double xStd = std(List.of(params.get(0)));
-        double yStd = std(List.of(params.get(1)));
-
-        return (xyMean - xMean * yMean) / (xStd * yStd);
+        double xMean = 0;
+        double yMean = 0;
+        double xDeviationSquareSum = 0;
+        double yDeviationSquareSum = 0;
+        double xyDeviationProductSum = 0;
+        for (int i = 0; i < xs.size(); i++) {
+            double x = xs.get(i);
+            double y = ys.get(i);
+            double xDelta = x - xMean;
+            double yDelta = y - yMean;
+            xMean += xDelta / (i + 1);
+            yMean += yDelta / (i + 1);
+            xDeviationSquareSum += xDelta * (x - xMean);
+            yDeviationSquareSum += yDelta * (y - yMean);
+            xyDeviationProductSum += xDelta * (y - yMean);
+        }
+        return xyDeviationProductSum / (Math.sqrt(xDeviationSquareSum) * Math.sqrt(yDeviationSquareSum));
     }
 
     private static List<Double> getDoubleValuesFromParams(List<Object> params) {
@@ -218,5 +265,14 @@ public class FunctionRepository {
                 paramId += functionParamLimit.checkParams(paramValues, paramId);
             }
         }
+
+        public boolean isValidParams(List<Object> paramValues) {
+            try {
+                checkParams(paramValues);
+                return true;
+            } catch (FunctionParameterException e) {
+                return false;
+            }
+        }
     }
 }
@@ -0,0 +1,109 @@
+package jetbrains.formulas.calculator.functions;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.formulas.calculator.CellValueJournal;
+import jetbrains.formulas.calculator.DoubleEvaluator;
+import jetbrains.formulas.calculator.ValueSource;
+
+import java.util.Set;
+
+public class IncrementalRangeEvaluator implements DoubleEvaluator {
+    public static final int DRIFT_THRESHOLD = 1000;
+
+    private static final Set<RangeFunction> INVERTIBLE_RANGE_FUNCTIONS = Set.of(RangeFunction.SUM, RangeFunction.MEAN, RangeFunction.STD);
+
+    private final RangeFunction rangeFunction;
+    private final CellRangeView cellRangeView;
+    private CellValueJournal cellValueJournal;
+    private long journalPosition;
+    private int deltaCount;
+    private double shift;
+    private double shiftedSum;
+    private double shiftedSquareSum;
+
+    public IncrementalRangeEvaluator(RangeFunction rangeFunction, CellRangeView cellRangeView) {
+        this.rangeFunction = rangeFunction;
+        this.cellRangeView = cellRangeView;
+    }
+
+    public static boolean isSupported(RangeFunction rangeFunction, CellRangeView cellRangeView) {
+        if (!INVERTIBLE_RANGE_FUNCTIONS.contains(rangeFunction)) {
+            return false;
+        }
+        for (int paramId = 0; paramId < cellRangeView.getParamCount(); paramId++) {
+            if (!cellRangeView.isCellDiapason(paramId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public double eval(ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+        CellValueJournal cellValueJournal = valueSource.getCellValueJournal();
+        if (cellValueJournal == null) {
+            return rangeFunction.apply(cellRangeView, valueSource);
+        }
+        if (cellValueJournal != this.cellValueJournal || !applyJournal()) {
+            return recalculate(valueSource, cellValueJournal);
+        }
+        return getValue();
+    }
+
+    private double recalculate(ValueSource valueSource, CellValueJournal cellValueJournal) throws FunctionParameterException, FormulaCalculatorException {
+        this.cellValueJournal = null;
+        long journalPosition = cellValueJournal.size();
+        double value = rangeFunction.apply(cellRangeView, valueSource);
+        int size = cellRangeView.getSize();
+        if (rangeFunction == RangeFunction.STD) {
+            shift = RangeFunction.MEAN.apply(cellRangeView, valueSource);
+            shiftedSum = 0;
+            shiftedSquareSum = value * value * size;
+        } else {
+            shift = 0;
+            shiftedSum = rangeFunction == RangeFunction.SUM ? value : value * size;
+            shiftedSquareSum = 0;
+        }
+        if (Double.isFinite(shift) && Double.isFinite(shiftedSum) && Double.isFinite(shiftedSquareSum)) {
+            this.cellValueJournal = cellValueJournal;
+            this.journalPosition = journalPosition;
+            this.deltaCount = 0;
+        }
+        return value;
+    }
+
+    private boolean applyJournal() {
+        long journalSize = cellValueJournal.size();
+        if (!cellValueJournal.isAvailable(journalPosition) || journalSize - journalPosition > cellRangeView.getSize()) {
+            return false;
+        }
+        for (long position = journalPosition; position < journalSize; position++) {
+            int row = cellValueJournal.getRow(position);
+            int column = cellValueJournal.getColumn(position);
+            for (int paramId = 0; paramId < cellRangeView.getParamCount(); paramId++) {
+                if (cellRangeView.contains(paramId, row, column)) {
+                    double oldValue = cellValueJournal.getOldValue(position);
+                    double newValue = cellValueJournal.getNewValue(position);
+                    if (!Double.isFinite(oldValue) || !Double.isFinite(newValue) || ++deltaCount > DRIFT_THRESHOLD) {
+                        return false;
+                    }
+                    shiftedSum += (newValue - shift) - (oldValue - shift);
+                    shiftedSquareSum += (newValue - shift) * (newValue - shift) - (oldValue - shift) * (oldValue - shift);
+                }
+            }
+        }
+        journalPosition = journalSize;
+        return true;
+    }
+
+    private double getValue() {
+        int size = cellRangeView.getSize();
+        return switch (rangeFunction) {
+            case SUM -> shiftedSum;
+            case MEAN -> shiftedSum / size;
+            case STD -> Math.sqrt(Math.max(0, shiftedSquareSum - shiftedSum * shiftedSum / size) / size);
+            case default -> throw new IllegalStateException(rangeFunction + " can not be updated incrementally.");
+        };
+    }
+}
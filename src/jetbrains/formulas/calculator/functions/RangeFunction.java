@@ -0,0 +1,191 @@
+package jetbrains.formulas.calculator.functions;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.formulas.calculator.ValueSource;
+import jetbrains.formulas.calculator.indexes.BlockSumIndex;
+import jetbrains.formulas.calculator.indexes.ColumnIndexes;
+import jetbrains.formulas.calculator.indexes.SegmentTree;
+
+public enum RangeFunction {
+    SUM {
+        @Override
+        public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+            double sum = 0;
+            for (int paramId = 0; paramId < cellRangeView.getParamCount(); paramId++) {
+                if (cellRangeView.isCellDiapason(paramId)) {
+                    cellRangeView.checkInsideTable(paramId, valueSource);
+                }
+                sum = addParamValues(cellRangeView, paramId, valueSource, sum);
+            }
+            return sum;
+        }
+    },
+    MEAN {
+        @Override
+        public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+            return SUM.apply(cellRangeView, valueSource) / cellRangeView.getSize();
+        }
+    },
+    MIN {
+        @Override
+        public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+            double min = Double.NaN;
+            for (int paramId = 0; paramId < cellRangeView.getParamCount(); paramId++) {
+                if (!cellRangeView.isCellDiapason(paramId)) {
+                    min = SegmentTree.getMin(min, cellRangeView.getParamValue(paramId, valueSource));
+                    continue;
+                }
+                cellRangeView.checkInsideTable(paramId, valueSource);
+                min = SegmentTree.getMin(min, getMin(cellRangeView, paramId, valueSource));
+            }
+            return min;
+        }
+    },
+    MAX {
+        @Override
+        public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int paramId = 0; paramId < cellRangeView.getParamCount(); paramId++) {
+                if (!cellRangeView.isCellDiapason(paramId)) {
+                    max = SegmentTree.getMax(max, cellRangeView.getParamValue(paramId, valueSource));
+                    continue;
+                }
+                cellRangeView.checkInsideTable(paramId, valueSource);
+                max = SegmentTree.getMax(max, getMax(cellRangeView, paramId, valueSource));
+            }
+            return max;
+        }
+    },
+    STD {
+        @Override
+        public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+            int count = 0;
+            double mean = 0;
+            double deviationSquareSum = 0;
+            for (int paramId = 0; paramId < cellRangeView.getParamCount(); paramId++) {
+                if (!cellRangeView.isCellDiapason(paramId)) {
+                    double value = cellRangeView.getParamValue(paramId, valueSource);
+                    double delta = value - mean;
+                    mean += delta / ++count;
+                    deviationSquareSum += delta * (value - mean);
+                    continue;
+                }
+                cellRangeView.checkInsideTable(paramId, valueSource);
+                for (int row = cellRangeView.getFromRow(paramId); row <= cellRangeView.getToRow(paramId); row++) {
+                    for (int column = cellRangeView.getFromColumn(paramId); column <= cellRangeView.getToColumn(paramId); column++) {
+                        double value = valueSource.getValue(row, column);
+                        double delta = value - mean;
+                        mean += delta / ++count;
+                        deviationSquareSum += delta * (value - mean);
+                    }
+                }
+            }
+            return Math.sqrt(deviationSquareSum / count);
+        }
+    },
+    COR {
+        @Override
+        public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException {
+            cellRangeView.checkInsideTable(0, valueSource);
+            cellRangeView.checkInsideTable(1, valueSource);
+            if (cellRangeView.getSize(0) != cellRangeView.getSize(1)) {
+                return 0.0;
+            }
+            int count = 0;
+            double xMean = 0;
+            double yMean = 0;
+            double xDeviationSquareSum = 0;
+            double yDeviationSquareSum = 0;
+            double xyDeviationProductSum = 0;
+            int yRow = cellRangeView.getFromRow(1);
+            int yColumn = cellRangeView.getFromColumn(1);
+            for (int xRow = cellRangeView.getFromRow(0); xRow <= cellRangeView.getToRow(0); xRow++) {
+                for (int xColumn = cellRangeView.getFromColumn(0); xColumn <= cellRangeView.getToColumn(0); xColumn++) {
+                    double x = valueSource.getValue(xRow, xColumn);
+                    double y = valueSource.getValue(yRow, yColumn);
+                    count++;
+                    double xDelta = x - xMean;
+                    double yDelta = y - yMean;
+                    xMean += xDelta / count;
+                    yMean += yDelta / count;
+                    xDeviationSquareSum += xDelta * (x - xMean);
+                    yDeviationSquareSum += yDelta * (y - yMean);
+                    xyDeviationProductSum += xDelta * (y - yMean);
+                    if (++yColumn > cellRangeView.getToColumn(1)) {
+                        yColumn = cellRangeView.getFromColumn(1);
+                        yRow++;
+                    }
+                }
+            }
+            return xyDeviationProductSum / (Math.sqrt(xDeviationSquareSum) * Math.sqrt(yDeviationSquareSum));
+        }
+    };
+
+    private static double getMin(CellRangeView cellRangeView, int paramId, ValueSource valueSource) {
+        ColumnIndexes columnIndexes = valueSource.getColumnIndexes();
+        int fromRow = cellRangeView.getFromRow(paramId);
+        int toRow = cellRangeView.getToRow(paramId);
+        boolean isIndexed = columnIndexes != null && toRow - fromRow + 1 >= ColumnIndexes.MIN_ROWS_TO_INDEX;
+        double min = Double.NaN;
+        for (int column = cellRangeView.getFromColumn(paramId); column <= cellRangeView.getToColumn(paramId); column++) {
+            SegmentTree minMaxIndex = isIndexed ? columnIndexes.getMinMaxIndex(column, valueSource) : null;
+            if (minMaxIndex != null) {
+                min = SegmentTree.getMin(min, minMaxIndex.getMin(fromRow, toRow));
+                continue;
+            }
+            for (int row = fromRow; row <= toRow; row++) {
+                min = SegmentTree.getMin(min, valueSource.getValue(row, column));
+            }
+        }
+        return min;
+    }
+
+    private static double getMax(CellRangeView cellRangeView, int paramId, ValueSource valueSource) {
+        ColumnIndexes columnIndexes = valueSource.getColumnIndexes();
+        int fromRow = cellRangeView.getFromRow(paramId);
+        int toRow = cellRangeView.getToRow(paramId);
+        boolean isIndexed = columnIndexes != null && toRow - fromRow + 1 >= ColumnIndexes.MIN_ROWS_TO_INDEX;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int column = cellRangeView.getFromColumn(paramId); column <= cellRangeView.getToColumn(paramId); column++) {
+            SegmentTree minMaxIndex = isIndexed ? columnIndexes.getMinMaxIndex(column, valueSource) : null;
+            if (minMaxIndex != null) {
+                max = SegmentTree.getMax(max, minMaxIndex.getMax(fromRow, toRow));
+                continue;
+            }
+            for (int row = fromRow; row <= toRow; row++) {
+                max = SegmentTree.getMax(max, valueSource.getValue(row, column));
+            }
+        }
+        return max;
+    }
+
+    private static double addParamValues(CellRangeView cellRangeView, int paramId, ValueSource valueSource,
+                                         double sum) throws FunctionParameterException, FormulaCalculatorException {
+        if (!cellRangeView.isCellDiapason(paramId)) {
+            return sum + cellRangeView.getParamValue(paramId, valueSource);
+        }
+        ColumnIndexes columnIndexes = valueSource.getColumnIndexes();
+        int fromRow = cellRangeView.getFromRow(paramId);
+        int toRow = cellRangeView.getToRow(paramId);
+        if (columnIndexes != null && toRow - fromRow + 1 >= ColumnIndexes.MIN_ROWS_TO_INDEX) {
+            for (int column = cellRangeView.getFromColumn(paramId); column <= cellRangeView.getToColumn(paramId); column++) {
+                BlockSumIndex sumIndex = columnIndexes.getSumIndex(column, valueSource);
+                if (sumIndex != null) {
+                    sum += sumIndex.getSum(fromRow, toRow);
+                } else {
+                    sum += BlockSumIndex.getSum(valueSource, column, fromRow, toRow);
+                }
+            }
+            return sum;
+        }
+        for (int row = cellRangeView.getFromRow(paramId); row <= cellRangeView.getToRow(paramId); row++) {
+            for (int column = cellRangeView.getFromColumn(paramId); column <= cellRangeView.getToColumn(paramId); column++) {
+                sum += valueSource.getValue(row, column);
+            }
+        }
+        return sum;
+    }
+
+    abstract public double apply(CellRangeView cellRangeView, ValueSource valueSource) throws FunctionParameterException, FormulaCalculatorException;
+}
@@ -0,0 +1,100 @@
+package jetbrains.formulas.calculator.indexes;
+
+import jetbrains.formulas.calculator.ValueSource;
+
+public class BlockSumIndex {
+    public static final int BLOCK_SIZE = 64;
+    public static final int SUPERBLOCK_SIZE = BLOCK_SIZE * BLOCK_SIZE;
+
+    private final double[] values;
+    private final double[] blockSums;
+    private final double[] superblockSums;
+
+    public BlockSumIndex(double[] values) {
+        this.values = values;
+        this.blockSums = new double[values.length / BLOCK_SIZE];
+        this.superblockSums = new double[values.length / SUPERBLOCK_SIZE];
+        for (int block = 0; block < blockSums.length; block++) {
+            blockSums[block] = getBlockSum(values, block * BLOCK_SIZE);
+        }
+        for (int superblock = 0; superblock < superblockSums.length; superblock++) {
+            superblockSums[superblock] = getBlockSum(blockSums, superblock * BLOCK_SIZE);
+        }
+    }
+
+    public void set(int id, double value) {
+        values[id] = value;
+        int block = id / BLOCK_SIZE;
+        if (block < blockSums.length) {
+            blockSums[block] = getBlockSum(values, block * BLOCK_SIZE);
+        }
+        int superblock = id / SUPERBLOCK_SIZE;
+        if (superblock < superblockSums.length) {
+            superblockSums[superblock] = getBlockSum(blockSums, superblock * BLOCK_SIZE);
+        }
+    }
+
+    public double getSum(int fromId, int toId) {
+        double sum = 0;
+        int id = fromId;
+        while (id <= toId) {
+            if (id % SUPERBLOCK_SIZE == 0 && id + SUPERBLOCK_SIZE - 1 <= toId) {
+                sum += superblockSums[id / SUPERBLOCK_SIZE];
+                id += SUPERBLOCK_SIZE;
+            } else if (id % BLOCK_SIZE == 0 && id + BLOCK_SIZE - 1 <= toId) {
+                sum += blockSums[id / BLOCK_SIZE];
+                id += BLOCK_SIZE;
+            } else {
+                sum += values[id];
+                id++;
+            }
+        }
+        return sum;
+    }
+
+    public static double getSum(ValueSource valueSource, int column, int fromRow, int toRow) {
+        double sum = 0;
+        int row = fromRow;
+        while (row <= toRow) {
+            if (row % SUPERBLOCK_SIZE == 0 && row + SUPERBLOCK_SIZE - 1 <= toRow) {
+                sum += getSuperblockSum(valueSource, column, row);
+                row += SUPERBLOCK_SIZE;
+            } else if (row % BLOCK_SIZE == 0 && row + BLOCK_SIZE - 1 <= toRow) {
+                sum += getBlockSum(valueSource, column, row);
+                row += BLOCK_SIZE;
+            } else {
+                sum += valueSource.getValue(row, column);
+                row++;
+            }
+        }
+        return sum;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    private static double getBlockSum(double[] values, int fromId) {
+        double sum = 0;
+        for (int id = fromId; id < fromId + BLOCK_SIZE; id++) {
+            sum += values[id];
+        }
+        return sum;
+    }
+
+    private static double getBlockSum(ValueSource valueSource, int column, int fromRow) {
+        double sum = 0;
+        for (int row = fromRow; row < fromRow + BLOCK_SIZE; row++) {
+            sum += valueSource.getValue(row, column);
+        }
+        return sum;
+    }
+
+    private static double getSuperblockSum(ValueSource valueSource, int column, int fromRow) {
+        double sum = 0;
+        for (int row = fromRow; row < fromRow + SUPERBLOCK_SIZE; row += BLOCK_SIZE) {
+            sum += getBlockSum(valueSource, column, row);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,53 @@
+package jetbrains.formulas.calculator.indexes;
+
+import jetbrains.formulas.calculator.ValueSource;
+
+public class ColumnIndexes {
+    public static final int MIN_ROWS_TO_INDEX = 64;
+    public static final int QUERIES_TO_BUILD_INDEX = 16;
+
+    private final int rowCount;
+    private final BlockSumIndex[] columnSumIndexes;
+    private final int[] columnSumQueryCounts;
+    private final SegmentTree[] columnMinMaxIndexes;
+    private final int[] columnMinMaxQueryCounts;
+
+    public ColumnIndexes(int rowCount, int columnCount) {
+        this.rowCount = rowCount;
+        this.columnSumIndexes = new BlockSumIndex[columnCount];
+        this.columnSumQueryCounts = new int[columnCount];
+        this.columnMinMaxIndexes = new SegmentTree[columnCount];
+        this.columnMinMaxQueryCounts = new int[columnCount];
+    }
+
+    public synchronized BlockSumIndex getSumIndex(int column, ValueSource valueSource) {
+        if (columnSumIndexes[column] == null && ++columnSumQueryCounts[column] >= QUERIES_TO_BUILD_INDEX) {
+            columnSumIndexes[column] = new BlockSumIndex(getColumnValues(column, valueSource));
+        }
+        return columnSumIndexes[column];
+    }
+
+    public synchronized SegmentTree getMinMaxIndex(int column, ValueSource valueSource) {
+        if (columnMinMaxIndexes[column] == null && ++columnMinMaxQueryCounts[column] >= QUERIES_TO_BUILD_INDEX) {
+            columnMinMaxIndexes[column] = new SegmentTree(getColumnValues(column, valueSource));
+        }
+        return columnMinMaxIndexes[column];
+    }
+
+    public synchronized void onValueChanged(int row, int column, double value) {
+        if (columnSumIndexes[column] != null) {
+            columnSumIndexes[column].set(row, value);
+        }
+        if (columnMinMaxIndexes[column] != null) {
+            columnMinMaxIndexes[column].set(row, value);
+        }
+    }
+
+    private double[] getColumnValues(int column, ValueSource valueSource) {
+        double[] values = new double[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            values[row] = valueSource.getValue(row, column);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,70 @@
+package jetbrains.formulas.calculator.indexes;
+
+public class SegmentTree {
+    private final int size;
+    private final double[] mins;
+    private final double[] maxs;
+
+    public SegmentTree(double[] values) {
+        this.size = values.length;
+        this.mins = new double[2 * size];
+        this.maxs = new double[2 * size];
+        System.arraycopy(values, 0, mins, size, size);
+        System.arraycopy(values, 0, maxs, size, size);
+        for (int i = size - 1; i > 0; i--) {
+            update(i);
+        }
+    }
+
+    public void set(int id, double value) {
+        int i = id + size;
+        mins[i] = value;
+        maxs[i] = value;
+        for (i >>= 1; i > 0; i >>= 1) {
+            update(i);
+        }
+    }
+
+    public double getMin(int fromId, int toId) {
+        double min = Double.NaN;
+        for (int left = fromId + size, right = toId + size + 1; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                min = getMin(min, mins[left++]);
+            }
+            if ((right & 1) == 1) {
+                min = getMin(min, mins[--right]);
+            }
+        }
+        return min;
+    }
+
+    public double getMax(int fromId, int toId) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int left = fromId + size, right = toId + size + 1; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                max = getMax(max, maxs[left++]);
+            }
+            if ((right & 1) == 1) {
+                max = getMax(max, maxs[--right]);
+            }
+        }
+        return max;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void update(int i) {
+        mins[i] = getMin(mins[2 * i], mins[2 * i + 1]);
+        maxs[i] = getMax(maxs[2 * i], maxs[2 * i + 1]);
+    }
+
+    public static double getMin(double a, double b) {
+        return Double.compare(a, b) > 0 ? b : a;
+    }
+
+    public static double getMax(double a, double b) {
+        return Double.compare(a, b) < 0 ? b : a;
+    }
+}
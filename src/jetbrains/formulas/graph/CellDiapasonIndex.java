@@ -0,0 +1,63 @@
+package jetbrains.formulas.graph;
+
+import jetbrains.table.structures.CellDiapason;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class CellDiapasonIndex {
+    private static final int MAX_COLUMNS_TO_INDEX_SEPARATELY = 64;
+
+    private final Map<Integer, IntervalTree> columnToRowIntervals = new HashMap<>();
+    private final IntervalTree wideDiapasonRowIntervals = new IntervalTree();
+    private final Map<Integer, CellDiapason> vertexToWideDiapason = new HashMap<>();
+
+    void add(CellDiapason cellDiapason, int vertex) {
+        int fromRow = cellDiapason.fromCellPosition.row;
+        int toRow = cellDiapason.toCellPosition.row;
+        if (isWide(cellDiapason)) {
+            wideDiapasonRowIntervals.add(fromRow, toRow, vertex);
+            vertexToWideDiapason.put(vertex, cellDiapason);
+            return;
+        }
+        for (int column = cellDiapason.fromCellPosition.column; column <= cellDiapason.toCellPosition.column; column++) {
+            columnToRowIntervals.computeIfAbsent(column, c -> new IntervalTree()).add(fromRow, toRow, vertex);
+        }
+    }
+
+    void remove(CellDiapason cellDiapason, int vertex) {
+        int fromRow = cellDiapason.fromCellPosition.row;
+        if (isWide(cellDiapason)) {
+            wideDiapasonRowIntervals.remove(fromRow, vertex);
+            vertexToWideDiapason.remove(vertex);
+            return;
+        }
+        for (int column = cellDiapason.fromCellPosition.column; column <= cellDiapason.toCellPosition.column; column++) {
+            IntervalTree rowIntervals = columnToRowIntervals.get(column);
+            rowIntervals.remove(fromRow, vertex);
+            if (rowIntervals.isEmpty()) {
+                columnToRowIntervals.remove(column);
+            }
+        }
+    }
+
+    void findVerticesContaining(int row, int column, IntList vertices) {
+        IntervalTree rowIntervals = columnToRowIntervals.get(column);
+        if (rowIntervals != null) {
+            rowIntervals.findValuesContaining(row, vertices);
+        }
+        if (!vertexToWideDiapason.isEmpty()) {
+            int firstWideVertexId = vertices.size();
+            wideDiapasonRowIntervals.findValuesContaining(row, vertices);
+            vertices.retainFrom(firstWideVertexId, vertex -> {
+                CellDiapason cellDiapason = vertexToWideDiapason.get(vertex);
+                return cellDiapason.fromCellPosition.column <= column && column <= cellDiapason.toCellPosition.column;
+            });
+        }
+    }
+
+    private static boolean isWide(CellDiapason cellDiapason) {
+        long columns = (long) cellDiapason.toCellPosition.column - cellDiapason.fromCellPosition.column + 1;
+        return columns > MAX_COLUMNS_TO_INDEX_SEPARATELY;
+    }
+}
@@ -1,96 +1,365 @@
 package jetbrains.formulas.graph;
 
 import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.table.structures.CellDiapason;
 import jetbrains.table.structures.CellPosition;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class FormulaDependencyGraph {
-    private int dfsRuns = 0;
-    private final Map<CellPosition, Vertex> cellPositionToVertex = new HashMap<>();
+    public static final String CYCLIC_DEPENDENCY_MESSAGE = "Cyclic dependency was found.";
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final LongIntHashMap cellToVertex = new LongIntHashMap();
+    private final Map<CellDiapason, Integer> cellDiapasonToVertex = new HashMap<>();
+    private final CellDiapasonIndex cellDiapasonIndex = new CellDiapasonIndex();
+    private long[] vertexCells = new long[INITIAL_CAPACITY];
+    private CellDiapason[] vertexCellDiapasons = new CellDiapason[INITIAL_CAPACITY];
+    private int[] firstOutgoingEdges = new int[INITIAL_CAPACITY];
+    private int[] firstIncomingEdges = new int[INITIAL_CAPACITY];
+    private int[] vertexVisitRuns = new int[INITIAL_CAPACITY];
+    private int[] incomingEdgesToVisit = new int[INITIAL_CAPACITY];
+    private int[] vertexReachableIds = new int[INITIAL_CAPACITY];
+    private int[] vertexLevels = new int[INITIAL_CAPACITY];
+    private int vertexCount = 0;
+    private int firstFreeVertex = NONE;
+
+    private int[] edgeFromVertices = new int[INITIAL_CAPACITY];
+    private int[] edgeToVertices = new int[INITIAL_CAPACITY];
+    private int[] nextOutgoingEdges = new int[INITIAL_CAPACITY];
+    private int[] previousOutgoingEdges = new int[INITIAL_CAPACITY];
+    private int[] nextIncomingEdges = new int[INITIAL_CAPACITY];
+    private int edgeCount = 0;
+    private int firstFreeEdge = NONE;
+
+    private int visitRuns = 0;
 
     public void addEdge(CellPosition fromCellPosition, CellPosition toCellPosition) {
-        Vertex fromVertex = getVertex(fromCellPosition);
-        Vertex toVertex = getVertex(toCellPosition);
-        fromVertex.outgoingEdges.add(toVertex);
-        toVertex.incomingEdges.add(fromVertex);
+        addEdge(getCellVertex(getCellKey(fromCellPosition)), getCellVertex(getCellKey(toCellPosition)));
+    }
+
+    public void addEdge(CellDiapason fromCellDiapason, CellPosition toCellPosition) {
+        addEdge(getCellDiapasonVertex(fromCellDiapason), getCellVertex(getCellKey(toCellPosition)));
     }
 
     public void removeIncomingEdges(CellPosition cellPosition) {
-        Vertex vertex = getVertex(cellPosition);
-        for (Vertex fromVertex : vertex.incomingEdges) {
-            fromVertex.outgoingEdges.remove(vertex);
-            tryRemoveVertex(fromVertex);
+        int vertex = cellToVertex.get(getCellKey(cellPosition));
+        if (vertex == NONE) {
+            return;
+        }
+        int edge = firstIncomingEdges[vertex];
+        while (edge != NONE) {
+            int nextEdge = nextIncomingEdges[edge];
+            int fromVertex = edgeFromVertices[edge];
+            removeFromOutgoingEdges(edge);
+            freeEdge(edge);
+            if (fromVertex != vertex) {
+                tryRemoveVertex(fromVertex);
+            }
+            edge = nextEdge;
         }
-        vertex.incomingEdges.clear();
+        firstIncomingEdges[vertex] = NONE;
         tryRemoveVertex(vertex);
     }
 
+    public void forEachPrecedent(CellPosition cellPosition,
+                                 Consumer<CellPosition> cellPositionConsumer,
+                                 Consumer<CellDiapason> cellDiapasonConsumer) {
+        int vertex = cellToVertex.get(getCellKey(cellPosition));
+        if (vertex == NONE) {
+            return;
+        }
+        for (int edge = firstIncomingEdges[vertex]; edge != NONE; edge = nextIncomingEdges[edge]) {
+            int fromVertex = edgeFromVertices[edge];
+            if (vertexCellDiapasons[fromVertex] == null) {
+                cellPositionConsumer.accept(getCellPosition(vertexCells[fromVertex]));
+            } else {
+                cellDiapasonConsumer.accept(vertexCellDiapasons[fromVertex]);
+            }
+        }
+    }
+
     public List<CellPosition> getCalculateOrder(CellPosition startCellPosition) throws FormulaCalculatorException {
-        Vertex startVertex = getVertex(startCellPosition);
-        List<CellPosition> calculateOrder = new ArrayList<>();
-        dfsRuns++;
-        dfs(startVertex, calculateOrder);
-        tryRemoveVertex(startVertex);
-        Collections.reverse(calculateOrder);
-        return calculateOrder;
+        CalculateOrder calculateOrder = getCalculateOrder(List.of(startCellPosition));
+        if (!calculateOrder.cyclicCellPositions.isEmpty()) {
+            throw new FormulaCalculatorException(CYCLIC_DEPENDENCY_MESSAGE);
+        }
+        return calculateOrder.cellPositions;
     }
 
-    private void dfs(Vertex vertex, List<CellPosition> calculateOrder) throws FormulaCalculatorException {
-        vertex.dfsColor = getGrayColorId();
-        for (Vertex toVertex : vertex.outgoingEdges) {
-            if (toVertex.dfsColor == getGrayColorId()) {
-                throw new FormulaCalculatorException("Cyclic dependency was found.");
-            } else if (toVertex.dfsColor != getBlackColorId()) {
-                dfs(toVertex, calculateOrder);
+    public CalculateOrder getCalculateOrder(Collection<CellPosition> startCellPositions) {
+        CalculateOrder calculateOrder = new CalculateOrder();
+        IntList reachableVertices = new IntList();
+        IntList cellDiapasonEdgesStarts = new IntList();
+        IntList cellDiapasonEdges = new IntList();
+        IntList temporaryVertices = new IntList();
+        IntList vertexStack = new IntList();
+        visitRuns++;
+        for (CellPosition startCellPosition : startCellPositions) {
+            long startCellKey = getCellKey(startCellPosition);
+            int startVertex = cellToVertex.get(startCellKey);
+            if (startVertex == NONE) {
+                int cellDiapasonEdgesCount = cellDiapasonEdges.size();
+                cellDiapasonIndex.findVerticesContaining(startCellPosition.row, startCellPosition.column, cellDiapasonEdges);
+                if (cellDiapasonEdges.size() == cellDiapasonEdgesCount) {
+                    calculateOrder.add(startCellPosition, 0);
+                    continue;
+                }
+                cellDiapasonEdges.retainFrom(cellDiapasonEdgesCount, vertex -> false);
+                startVertex = getCellVertex(startCellKey);
+                temporaryVertices.add(startVertex);
+            }
+            if (vertexVisitRuns[startVertex] == visitRuns) {
+                continue;
+            }
+            vertexVisitRuns[startVertex] = visitRuns;
+            vertexStack.add(startVertex);
+            while (!vertexStack.isEmpty()) {
+                int vertex = vertexStack.removeLast();
+                incomingEdgesToVisit[vertex] = 0;
+                reachableVertices.add(vertex);
+                cellDiapasonEdgesStarts.add(cellDiapasonEdges.size());
+                if (vertexCellDiapasons[vertex] == null) {
+                    long cellKey = vertexCells[vertex];
+                    cellDiapasonIndex.findVerticesContaining(getRow(cellKey), getColumn(cellKey), cellDiapasonEdges);
+                }
+                for (int i = cellDiapasonEdgesStarts.get(cellDiapasonEdgesStarts.size() - 1); i < cellDiapasonEdges.size(); i++) {
+                    visit(cellDiapasonEdges.get(i), vertexStack);
+                }
+                for (int edge = firstOutgoingEdges[vertex]; edge != NONE; edge = nextOutgoingEdges[edge]) {
+                    visit(edgeToVertices[edge], vertexStack);
+                }
             }
         }
-        vertex.dfsColor = getBlackColorId();
-        calculateOrder.add(vertex.cellPosition);
+        cellDiapasonEdgesStarts.add(cellDiapasonEdges.size());
+
+        for (int i = 0; i < reachableVertices.size(); i++) {
+            int vertex = reachableVertices.get(i);
+            for (int j = cellDiapasonEdgesStarts.get(i); j < cellDiapasonEdgesStarts.get(i + 1); j++) {
+                incomingEdgesToVisit[cellDiapasonEdges.get(j)]++;
+            }
+            for (int edge = firstOutgoingEdges[vertex]; edge != NONE; edge = nextOutgoingEdges[edge]) {
+                incomingEdgesToVisit[edgeToVertices[edge]]++;
+            }
+        }
+        IntList vertexQueue = new IntList();
+        for (int i = 0; i < reachableVertices.size(); i++) {
+            int vertex = reachableVertices.get(i);
+            vertexReachableIds[vertex] = i;
+            vertexLevels[vertex] = 0;
+            if (incomingEdgesToVisit[vertex] == 0) {
+                vertexQueue.add(vertex);
+            }
+        }
+        for (int vertexQueueHead = 0; vertexQueueHead < vertexQueue.size(); vertexQueueHead++) {
+            int vertex = vertexQueue.get(vertexQueueHead);
+            int nextLevel = vertexLevels[vertex];
+            if (vertexCellDiapasons[vertex] == null) {
+                calculateOrder.add(getCellPosition(vertexCells[vertex]), vertexLevels[vertex]);
+                nextLevel++;
+            }
+            int reachableVertexId = vertexReachableIds[vertex];
+            for (int j = cellDiapasonEdgesStarts.get(reachableVertexId); j < cellDiapasonEdgesStarts.get(reachableVertexId + 1); j++) {
+                decreaseIncomingEdgesToVisit(cellDiapasonEdges.get(j), nextLevel, vertexQueue);
+            }
+            for (int edge = firstOutgoingEdges[vertex]; edge != NONE; edge = nextOutgoingEdges[edge]) {
+                decreaseIncomingEdgesToVisit(edgeToVertices[edge], nextLevel, vertexQueue);
+            }
+        }
+        for (int i = 0; i < reachableVertices.size(); i++) {
+            int vertex = reachableVertices.get(i);
+            if (incomingEdgesToVisit[vertex] > 0 && vertexCellDiapasons[vertex] == null) {
+                calculateOrder.cyclicCellPositions.add(getCellPosition(vertexCells[vertex]));
+            }
+        }
+        for (int i = 0; i < temporaryVertices.size(); i++) {
+            tryRemoveVertex(temporaryVertices.get(i));
+        }
+        return calculateOrder;
+    }
+
+    private void visit(int vertex, IntList vertexStack) {
+        if (vertexVisitRuns[vertex] != visitRuns) {
+            vertexVisitRuns[vertex] = visitRuns;
+            vertexStack.add(vertex);
+        }
     }
 
-    private Vertex getVertex(CellPosition cellPosition) {
-        if (!cellPositionToVertex.containsKey(cellPosition)) {
-            cellPositionToVertex.put(cellPosition, new Vertex(cellPosition));
+    private void decreaseIncomingEdgesToVisit(int vertex, int level, IntList vertexQueue) {
+        vertexLevels[vertex] = Math.max(vertexLevels[vertex], level);
+        incomingEdgesToVisit[vertex]--;
+        if (incomingEdgesToVisit[vertex] == 0) {
+            vertexQueue.add(vertex);
         }
-        return cellPositionToVertex.get(cellPosition);
     }
 
-    private void tryRemoveVertex(Vertex vertex) {
-        if (vertex.outgoingEdges.isEmpty() && vertex.incomingEdges.isEmpty()) {
-            cellPositionToVertex.remove(vertex.cellPosition);
+    private void addEdge(int fromVertex, int toVertex) {
+        int edge = newEdge();
+        edgeFromVertices[edge] = fromVertex;
+        edgeToVertices[edge] = toVertex;
+
+        previousOutgoingEdges[edge] = NONE;
+        nextOutgoingEdges[edge] = firstOutgoingEdges[fromVertex];
+        if (firstOutgoingEdges[fromVertex] != NONE) {
+            previousOutgoingEdges[firstOutgoingEdges[fromVertex]] = edge;
         }
+        firstOutgoingEdges[fromVertex] = edge;
+
+        nextIncomingEdges[edge] = firstIncomingEdges[toVertex];
+        firstIncomingEdges[toVertex] = edge;
     }
 
-    private int getGrayColorId() {
-        return 2 * dfsRuns + 1;
+    private int getCellVertex(long cellKey) {
+        int vertex = cellToVertex.get(cellKey);
+        if (vertex == NONE) {
+            vertex = newVertex();
+            vertexCells[vertex] = cellKey;
+            cellToVertex.put(cellKey, vertex);
+        }
+        return vertex;
     }
 
-    private int getBlackColorId() {
-        return 2 * dfsRuns + 2;
+    private int getCellDiapasonVertex(CellDiapason cellDiapason) {
+        Integer vertex = cellDiapasonToVertex.get(cellDiapason);
+        if (vertex == null) {
+            vertex = newVertex();
+            vertexCellDiapasons[vertex] = cellDiapason;
+            cellDiapasonToVertex.put(cellDiapason, vertex);
+            cellDiapasonIndex.add(cellDiapason, vertex);
+        }
+        return vertex;
     }
 
-    private static class Vertex {
-        int dfsColor = 0;
-        CellPosition cellPosition;
-        Set<Vertex> outgoingEdges = new HashSet<>();
-        Set<Vertex> incomingEdges = new HashSet<>();
+    private int newVertex() {
+        int vertex;
+        if (firstFreeVertex != NONE) {
+            vertex = firstFreeVertex;
+            firstFreeVertex = firstOutgoingEdges[vertex];
+        } else {
+            if (vertexCount == vertexCells.length) {
+                int capacity = 2 * vertexCount;
+                vertexCells = Arrays.copyOf(vertexCells, capacity);
+                vertexCellDiapasons = Arrays.copyOf(vertexCellDiapasons, capacity);
+                firstOutgoingEdges = Arrays.copyOf(firstOutgoingEdges, capacity);
+                firstIncomingEdges = Arrays.copyOf(firstIncomingEdges, capacity);
+                vertexVisitRuns = Arrays.copyOf(vertexVisitRuns, capacity);
+                incomingEdgesToVisit = Arrays.copyOf(incomingEdgesToVisit, capacity);
+                vertexReachableIds = Arrays.copyOf(vertexReachableIds, capacity);
+                vertexLevels = Arrays.copyOf(vertexLevels, capacity);
+            }
+            vertex = vertexCount++;
+        }
+        vertexCellDiapasons[vertex] = null;
+        firstOutgoingEdges[vertex] = NONE;
+        firstIncomingEdges[vertex] = NONE;
+        vertexVisitRuns[vertex] = 0;
+        return vertex;
+    }
 
-        public Vertex(CellPosition cellPosition) {
-            this.cellPosition = cellPosition;
+    private void tryRemoveVertex(int vertex) {
+        if (firstOutgoingEdges[vertex] != NONE || firstIncomingEdges[vertex] != NONE) {
+            return;
+        }
+        CellDiapason cellDiapason = vertexCellDiapasons[vertex];
+        if (cellDiapason == null) {
+            cellToVertex.remove(vertexCells[vertex]);
+        } else {
+            cellDiapasonToVertex.remove(cellDiapason);
+            cellDiapasonIndex.remove(cellDiapason, vertex);
+            vertexCellDiapasons[vertex] = null;
         }
+        firstOutgoingEdges[vertex] = firstFreeVertex;
+        firstFreeVertex = vertex;
+    }
+
+    private int newEdge() {
+        if (firstFreeEdge != NONE) {
+            int edge = firstFreeEdge;
+            firstFreeEdge = nextOutgoingEdges[edge];
+            return edge;
+        }
+        if (edgeCount == edgeFromVertices.length) {
+            int capacity = 2 * edgeCount;
+            edgeFromVertices = Arrays.copyOf(edgeFromVertices, capacity);
+            edgeToVertices = Arrays.copyOf(edgeToVertices, capacity);
+            nextOutgoingEdges = Arrays.copyOf(nextOutgoingEdges, capacity);
+            previousOutgoingEdges = Arrays.copyOf(previousOutgoingEdges, capacity);
+            nextIncomingEdges = Arrays.copyOf(nextIncomingEdges, capacity);
+        }
+        return edgeCount++;
+    }
+
+    private void freeEdge(int edge) {
+        nextOutgoingEdges[edge] = firstFreeEdge;
+        firstFreeEdge = edge;
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Vertex vertex = (Vertex) o;
-            return Objects.equals(cellPosition, vertex.cellPosition);
+    private void removeFromOutgoingEdges(int edge) {
+        int fromVertex = edgeFromVertices[edge];
+        int previousEdge = previousOutgoingEdges[edge];
+        int nextEdge = nextOutgoingEdges[edge];
+        if (previousEdge == NONE) {
+            firstOutgoingEdges[fromVertex] = nextEdge;
+        } else {
+            nextOutgoingEdges[previousEdge] = nextEdge;
+        }
+        if (nextEdge != NONE) {
+            previousOutgoingEdges[nextEdge] = previousEdge;
+        }
+    }
+
+    private static long getCellKey(CellPosition cellPosition) {
+        return ((long) cellPosition.row << 32) | (cellPosition.column & 0xFFFFFFFFL);
+    }
+
+    private static int getRow(long cellKey) {
+        return (int) (cellKey >> 32);
+    }
+
+    private static int getColumn(long cellKey) {
+        return (int) cellKey;
+    }
+
+    private static CellPosition getCellPosition(long cellKey) {
+        return new CellPosition(getRow(cellKey), getColumn(cellKey));
+    }
+
+    public static class CalculateOrder {
+        public final List<CellPosition> cellPositions = new ArrayList<>();
+        public final List<CellPosition> cyclicCellPositions = new ArrayList<>();
+        private final IntList cellPositionLevels = new IntList();
+        private int levelCount = 0;
+
+        public List<List<CellPosition>> getLevels() {
+            int[] levelStarts = new int[levelCount + 1];
+            for (int i = 0; i < cellPositionLevels.size(); i++) {
+                levelStarts[cellPositionLevels.get(i) + 1]++;
+            }
+            for (int level = 0; level < levelCount; level++) {
+                levelStarts[level + 1] += levelStarts[level];
+            }
+            int[] levelSizes = new int[levelCount];
+            CellPosition[] levelCellPositions = new CellPosition[cellPositions.size()];
+            for (int i = 0; i < cellPositions.size(); i++) {
+                int level = cellPositionLevels.get(i);
+                levelCellPositions[levelStarts[level] + levelSizes[level]++] = cellPositions.get(i);
+            }
+            List<List<CellPosition>> levels = new ArrayList<>();
+            for (int level = 0; level < levelCount; level++) {
+                if (levelSizes[level] > 0) {
+                    levels.add(Arrays.asList(levelCellPositions).subList(levelStarts[level], levelStarts[level + 1]));
+                }
+            }
+            return levels;
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(cellPosition);
+        private void add(CellPosition cellPosition, int level) {
+            cellPositions.add(cellPosition);
+            cellPositionLevels.add(level);
+            levelCount = Math.max(levelCount, level + 1);
         }
     }
 }
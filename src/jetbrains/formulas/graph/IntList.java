@@ -0,0 +1,42 @@
+package jetbrains.formulas.graph;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+class IntList {
+    private int[] values = new int[16];
+    private int size = 0;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        values[size++] = value;
+    }
+
+    int get(int id) {
+        return values[id];
+    }
+
+    int removeLast() {
+        return values[--size];
+    }
+
+    void retainFrom(int fromId, IntPredicate isRetained) {
+        int newSize = fromId;
+        for (int id = fromId; id < size; id++) {
+            if (isRetained.test(values[id])) {
+                values[newSize++] = values[id];
+            }
+        }
+        size = newSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,143 @@
+package jetbrains.formulas.graph;
+
+import java.util.Random;
+
+class IntervalTree {
+    private final Random random = new Random(0);
+    private Node root;
+
+    void add(int start, int end, int value) {
+        root = add(root, new Node(start, end, value, random.nextInt()));
+    }
+
+    void remove(int start, int value) {
+        root = remove(root, start, value);
+    }
+
+    void findValuesContaining(int point, IntList values) {
+        findValuesContaining(root, point, values);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    private static Node add(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (compare(newNode.start, newNode.value, node) < 0) {
+            node.left = add(node.left, newNode);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = add(node.right, newNode);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node remove(Node node, int start, int value) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(start, value, node);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        }
+        if (comparison < 0) {
+            node.left = remove(node.left, start, value);
+        } else {
+            node.right = remove(node.right, start, value);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void findValuesContaining(Node node, int point, IntList values) {
+        if (node == null || node.maxEnd < point) {
+            return;
+        }
+        findValuesContaining(node.left, point, values);
+        if (node.start <= point) {
+            if (point <= node.end) {
+                values.add(node.value);
+            }
+            findValuesContaining(node.right, point, values);
+        }
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.maxEnd = node.end;
+        if (node.left != null) {
+            node.maxEnd = Math.max(node.maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            node.maxEnd = Math.max(node.maxEnd, node.right.maxEnd);
+        }
+    }
+
+    private static int compare(int start, int value, Node node) {
+        if (start != node.start) {
+            return Integer.compare(start, node.start);
+        }
+        return Integer.compare(value, node.value);
+    }
+
+    private static class Node {
+        final int start;
+        final int end;
+        final int value;
+        final int priority;
+        int maxEnd;
+        Node left;
+        Node right;
+
+        Node(int start, int end, int value, int priority) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package jetbrains.formulas.graph;
+
+import java.util.Arrays;
+
+public class LongIntHashMap {
+    public static final int NO_VALUE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] values = newValues(INITIAL_CAPACITY);
+    private int size = 0;
+
+    public int get(long key) {
+        int slot = findSlot(key);
+        return values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != NO_VALUE;
+    }
+
+    public void put(long key, int value) {
+        if (value == NO_VALUE) {
+            throw new IllegalArgumentException("Value " + NO_VALUE + " is reserved for missing keys");
+        }
+        int slot = findSlot(key);
+        if (values[slot] == NO_VALUE) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        if (4 * size > 3 * keys.length) {
+            resize(2 * keys.length);
+        }
+    }
+
+    public int remove(long key) {
+        int slot = findSlot(key);
+        int value = values[slot];
+        if (value == NO_VALUE) {
+            return NO_VALUE;
+        }
+        values[slot] = NO_VALUE;
+        size--;
+        int mask = keys.length - 1;
+        int emptySlot = slot;
+        int curSlot = (slot + 1) & mask;
+        while (values[curSlot] != NO_VALUE) {
+            int homeSlot = getHomeSlot(keys[curSlot]);
+            if (((curSlot - homeSlot) & mask) >= ((curSlot - emptySlot) & mask)) {
+                keys[emptySlot] = keys[curSlot];
+                values[emptySlot] = values[curSlot];
+                values[curSlot] = NO_VALUE;
+                emptySlot = curSlot;
+            }
+            curSlot = (curSlot + 1) & mask;
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = getHomeSlot(key);
+        while (values[slot] != NO_VALUE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int getHomeSlot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = newValues(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int[] newValues(int capacity) {
+        int[] values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        return values;
+    }
+}
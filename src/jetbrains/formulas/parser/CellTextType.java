@@ -0,0 +1,74 @@
+package jetbrains.formulas.parser;
+
+public enum CellTextType {
+    EMPTY,
+    NUMBER,
+    TEXT,
+    FORMULA;
+
+    public static CellTextType getCellTextType(String text) {
+        int curId = skipTrimmedSymbols(text, 0);
+        if (curId == text.length()) {
+            return EMPTY;
+        }
+        if (text.charAt(curId) == '=') {
+            return FORMULA;
+        }
+        return getNumberEndId(text, curId) == -1 ? TEXT : NUMBER;
+    }
+
+    public static double getNumberValue(String text) {
+        int curId = skipTrimmedSymbols(text, 0);
+        boolean isNegative = text.charAt(curId) == '-';
+        if (isNegative) {
+            curId = skipSpaces(text, curId + 1);
+        }
+        int numberEndId = skipDigitsWithPoint(text, curId);
+        double value = Double.parseDouble(text.substring(curId, numberEndId));
+        return isNegative ? 0.0 - value : value;
+    }
+
+    private static int getNumberEndId(String text, int curId) {
+        if (text.charAt(curId) == '-') {
+            curId = skipSpaces(text, curId + 1);
+        }
+        if (curId == text.length() || !isDigit(text.charAt(curId))) {
+            return -1;
+        }
+        int numberEndId = skipDigitsWithPoint(text, curId);
+        return skipTrimmedSymbols(text, numberEndId) == text.length() ? numberEndId : -1;
+    }
+
+    private static int skipDigitsWithPoint(String text, int curId) {
+        curId = skipDigits(text, curId);
+        if (curId < text.length() && text.charAt(curId) == '.') {
+            curId = skipDigits(text, curId + 1);
+        }
+        return curId;
+    }
+
+    private static int skipDigits(String text, int curId) {
+        while (curId < text.length() && isDigit(text.charAt(curId))) {
+            curId++;
+        }
+        return curId;
+    }
+
+    private static int skipTrimmedSymbols(String text, int curId) {
+        while (curId < text.length() && text.charAt(curId) <= ' ') {
+            curId++;
+        }
+        return curId;
+    }
+
+    private static int skipSpaces(String text, int curId) {
+        while (curId < text.length() && FormulaScanner.isSpace(text.charAt(curId))) {
+            curId++;
+        }
+        return curId;
+    }
+
+    private static boolean isDigit(char symbol) {
+        return '0' <= symbol && symbol <= '9';
+    }
+}
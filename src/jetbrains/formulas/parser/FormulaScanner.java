@@ -0,0 +1,190 @@
+package jetbrains.formulas.parser;
+
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.calculator.functions.FunctionRepository;
+import jetbrains.formulas.parser.LexicalAnalyzer.Token;
+import jetbrains.formulas.parser.LexicalAnalyzer.TokenType;
+import jetbrains.table.TableGenerator;
+import jetbrains.table.structures.CellDiapason;
+import jetbrains.table.structures.CellPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class FormulaScanner {
+    private final String text;
+    private int curId;
+    private CellPosition scannedCellPosition;
+
+    private FormulaScanner(String text) {
+        this.text = text;
+    }
+
+    static List<Token> getTokens(String text) throws ParserException {
+        return new FormulaScanner(text).scan();
+    }
+
+    private List<Token> scan() throws ParserException {
+        List<Token> tokens = new ArrayList<>();
+        while (curId < text.length()) {
+            int tokenStartId = curId;
+            curId = skipSpaces(curId);
+            if (curId == text.length()) {
+                throw getUnexpectedElementsException(tokenStartId);
+            }
+            Token token = scanToken();
+            if (token == null) {
+                throw getUnexpectedElementsException(tokenStartId);
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private Token scanToken() throws ParserException {
+        char symbol = text.charAt(curId);
+        switch (symbol) {
+            case '=' -> {
+                return scanOperator(TokenType.EQ);
+            }
+            case '+' -> {
+                return scanOperator(TokenType.PLUS);
+            }
+            case '-' -> {
+                return scanOperator(TokenType.MINUS);
+            }
+            case '*' -> {
+                return scanOperator(TokenType.MUL);
+            }
+            case '/' -> {
+                return scanOperator(TokenType.DIV);
+            }
+            case '(' -> {
+                return scanOperator(TokenType.OPEN);
+            }
+            case ')' -> {
+                return scanOperator(TokenType.CLOSE);
+            }
+            case ',' -> {
+                return scanOperator(TokenType.COMMA);
+            }
+        }
+        if (isDigit(symbol)) {
+            return scanNumber();
+        }
+        if (symbol == '$' || isUpperLetter(symbol)) {
+            return scanCellPositionOrDiapason();
+        }
+        if (isLowerLetter(symbol)) {
+            return scanFunctionName();
+        }
+        return null;
+    }
+
+    private Token scanOperator(TokenType tokenType) {
+        curId++;
+        return new Token(tokenType, null);
+    }
+
+    private Token scanNumber() {
+        int numberStartId = curId;
+        int numberEndId = skipDigits(curId);
+        if (numberEndId < text.length() && text.charAt(numberEndId) == '.') {
+            numberEndId = skipDigits(numberEndId + 1);
+        }
+        curId = numberEndId;
+        return new Token(TokenType.NUMBER, Double.parseDouble(text.substring(numberStartId, numberEndId)));
+    }
+
+    private Token scanCellPositionOrDiapason() {
+        int fromCellEndId = scanCellPosition(curId);
+        if (fromCellEndId == -1) {
+            return null;
+        }
+        CellPosition fromCellPosition = scannedCellPosition;
+        if (fromCellEndId < text.length() && text.charAt(fromCellEndId) == ':') {
+            int toCellEndId = scanCellPosition(fromCellEndId + 1);
+            if (toCellEndId != -1) {
+                curId = toCellEndId;
+                return new Token(TokenType.CELL_DIAPASON, new CellDiapason(fromCellPosition, scannedCellPosition));
+            }
+        }
+        curId = fromCellEndId;
+        return new Token(TokenType.CELL_POSITION, fromCellPosition);
+    }
+
+    private int scanCellPosition(int startId) {
+        int id = skipDollar(startId);
+        int columnStartId = id;
+        while (id < text.length() && isUpperLetter(text.charAt(id))) {
+            id++;
+        }
+        int columnEndId = id;
+        if (columnStartId == columnEndId) {
+            return -1;
+        }
+        int rowStartId = skipDollar(columnEndId);
+        int rowEndId = skipDigits(rowStartId);
+        if (rowStartId == rowEndId) {
+            return -1;
+        }
+        int rowId = Integer.parseInt(text, rowStartId, rowEndId, 10);
+        int columnId = TableGenerator.getColumnIdByName(text, columnStartId, columnEndId);
+        scannedCellPosition = new CellPosition(rowId - 1, columnId + 1);
+        return rowEndId;
+    }
+
+    private Token scanFunctionName() throws ParserException {
+        int nameStartId = curId;
+        int nameEndId = curId + 1;
+        while (nameEndId < text.length() && isFunctionNameSymbol(text.charAt(nameEndId))) {
+            nameEndId++;
+        }
+        String functionName = text.substring(nameStartId, nameEndId);
+        FunctionRepository.checkFunctionName(functionName);
+        curId = nameEndId;
+        return new Token(TokenType.FUNCTION_NAME, functionName);
+    }
+
+    private int skipSpaces(int id) {
+        while (id < text.length() && isSpace(text.charAt(id))) {
+            id++;
+        }
+        return id;
+    }
+
+    private int skipDigits(int id) {
+        while (id < text.length() && isDigit(text.charAt(id))) {
+            id++;
+        }
+        return id;
+    }
+
+    private int skipDollar(int id) {
+        return id < text.length() && text.charAt(id) == '$' ? id + 1 : id;
+    }
+
+    private ParserException getUnexpectedElementsException(int tokenStartId) {
+        return new ParserException("Unexpected formula elements since: " + text.substring(tokenStartId));
+    }
+
+    static boolean isSpace(char symbol) {
+        return symbol == ' ' || symbol == '\t' || symbol == '\n' || symbol == '\u000B' || symbol == '\f' || symbol == '\r';
+    }
+
+    private static boolean isDigit(char symbol) {
+        return '0' <= symbol && symbol <= '9';
+    }
+
+    private static boolean isUpperLetter(char symbol) {
+        return 'A' <= symbol && symbol <= 'Z';
+    }
+
+    private static boolean isLowerLetter(char symbol) {
+        return 'a' <= symbol && symbol <= 'z';
+    }
+
+    private static boolean isFunctionNameSymbol(char symbol) {
+        return isLowerLetter(symbol) || isDigit(symbol) || symbol == '_';
+    }
+}
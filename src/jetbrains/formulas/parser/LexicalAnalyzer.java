@@ -18,15 +18,21 @@ public class LexicalAnalyzer {
     private static final String SKIP_SYMBOLS = "\\s*";
 
     public static List<Token> getTokensFromText(String text) throws ParserException {
-        text = text.trim();
+        return getTokensFromText(text, TokenizerMode.SCANNER);
+    }
+
+    public static List<Token> getTokensFromText(String text, TokenizerMode tokenizerMode) throws ParserException {
+        return tokenizerMode.getTokens(text.trim());
+    }
+
+    private static List<Token> getTokensWithRegularExpressions(String text) throws ParserException {
         List<Token> tokens = new ArrayList<>();
         int curId = 0;
         boolean isProgress;
         while (curId < text.length()) {
             isProgress = false;
             for (TokenType tokenType : TokenType.values()) {
-                Pattern pattern = Pattern.compile(tokenType.regularExpression);
-                Matcher matcher = pattern.matcher(text);
+                Matcher matcher = tokenType.pattern.matcher(text);
                 if (matcher.find(curId) && matcher.start() == curId) {
                     tokens.add(tokenType.getToken(matcher));
                     String parsedText = matcher.group();
@@ -44,8 +50,7 @@ public class LexicalAnalyzer {
 
     public static String getFormulaWithShiftedCells(String text, CellPosition copyCell, CellPosition pasteCell) {
         StringBuilder copyText = new StringBuilder();
-        Pattern pattern = Pattern.compile(TokenType.CELL_POSITION.regularExpression);
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = TokenType.CELL_POSITION.pattern.matcher(text);
         int curTextId = 0;
         while (matcher.find()) {
             copyText.append(text, curTextId, matcher.start());
@@ -74,6 +79,23 @@ public class LexicalAnalyzer {
         return copyText.toString();
     }
 
+    public enum TokenizerMode {
+        REGEX {
+            @Override
+            public List<Token> getTokens(String text) throws ParserException {
+                return getTokensWithRegularExpressions(text);
+            }
+        },
+        SCANNER {
+            @Override
+            public List<Token> getTokens(String text) throws ParserException {
+                return FormulaScanner.getTokens(text);
+            }
+        };
+
+        abstract public List<Token> getTokens(String text) throws ParserException;
+    }
+
     public static class Token {
         public TokenType tokenType;
         public Object data;
@@ -131,9 +153,11 @@ public class LexicalAnalyzer {
         };
 
         final String regularExpression;
+        final Pattern pattern;
 
         TokenType(String regularExpression) {
             this.regularExpression = SKIP_SYMBOLS + regularExpression;
+            this.pattern = Pattern.compile(this.regularExpression);
         }
 
         public Object getData(Matcher matcher) throws ParserException {
@@ -27,15 +27,12 @@ public class TerminalNode extends TreeNode {
     public void addAllCellPositions(Set<CellPosition> cellPositions) {
         if (token.tokenType == CELL_POSITION) {
             cellPositions.add((CellPosition) token.data);
-        } else if (token.tokenType == CELL_DIAPASON) {
-            CellDiapason cellDiapason = (CellDiapason) token.data;
-            CellPosition fromCellPosition = cellDiapason.fromCellPosition;
-            CellPosition toCellPosition = cellDiapason.toCellPosition;
-            for (int row = fromCellPosition.row; row <= toCellPosition.row; row++) {
-                for (int column = fromCellPosition.column; column <= toCellPosition.column; column++) {
-                    cellPositions.add(new CellPosition(row, column));
-                }
-            }
+        }
+    }
+
+    public void addAllCellDiapasons(Set<CellDiapason> cellDiapasons) {
+        if (token.tokenType == CELL_DIAPASON) {
+            cellDiapasons.add((CellDiapason) token.data);
         }
     }
 
@@ -2,7 +2,9 @@ package jetbrains.formulas.parser.nodes;
 
 import jetbrains.exceptions.FormulaCalculatorException;
 import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.formulas.calculator.DoubleEvaluator;
 import jetbrains.formulas.calculator.FormulaCalculator;
+import jetbrains.table.structures.CellDiapason;
 import jetbrains.table.structures.CellPosition;
 
 import java.util.List;
@@ -27,12 +29,22 @@ public class TreeNode {
         return formulaCalculator.calculate(this, tableValuesFunction);
     }
 
+    public DoubleEvaluator compile() {
+        return formulaCalculator.compile(this);
+    }
+
     public void addAllCellPositions(Set<CellPosition> cellPositions) {
         for (TreeNode child : children) {
             child.addAllCellPositions(cellPositions);
         }
     }
 
+    public void addAllCellDiapasons(Set<CellDiapason> cellDiapasons) {
+        for (TreeNode child : children) {
+            child.addAllCellDiapasons(cellDiapasons);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
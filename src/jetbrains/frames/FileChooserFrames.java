@@ -3,36 +3,43 @@ package jetbrains.frames;
 import jetbrains.exceptions.TableFileManagerException;
 import jetbrains.table.ExcelTable;
 import jetbrains.table.TableFileManager;
+import jetbrains.table.TableFileProgress;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 public class FileChooserFrames {
     public static void showSaveTableFileChooser(ExcelTable table, Component parent) {
+        showSaveTableFileChooser(table, parent, TableFileManager::saveTableToFile);
+    }
+
+    public static void showSaveMappedTableFileChooser(ExcelTable table, Component parent) {
+        showSaveTableFileChooser(table, parent, TableFileManager::saveTableToMappedFile);
+    }
+
+    private static void showSaveTableFileChooser(ExcelTable table, Component parent, TableSaver tableSaver) {
         showFileChooser(
                 parent,
                 "Choose a path to save table",
                 "Save",
-                selectedFile -> {
-                    try {
-                        TableFileManager.saveTableToFile(table, selectedFile);
-                        JOptionPane.showMessageDialog(
+                selectedFile -> runInBackground(
+                        parent,
+                        "Saving table",
+                        "File writing error",
+                        tableFileProgress -> {
+                            tableSaver.save(table, selectedFile, tableFileProgress);
+                            return table;
+                        },
+                        savedTable -> JOptionPane.showMessageDialog(
                                 parent,
                                 "Table was saved.",
                                 "Save status",
                                 JOptionPane.PLAIN_MESSAGE
-                        );
-                    } catch (TableFileManagerException exception) {
-                        JOptionPane.showMessageDialog(
-                                parent,
-                                exception.getMessage(),
-                                "File writing error",
-                                JOptionPane.ERROR_MESSAGE
-                        );
-                    }
-                });
+                        )));
     }
 
     public static void showOpenTableFileChooser(Consumer<ExcelTable> newTableOpener, Component parent) {
@@ -40,18 +47,38 @@ public class FileChooserFrames {
                 parent,
                 "Choose a table file to open",
                 "Open",
-                selectedFile -> {
-                    try {
-                        ExcelTable tableFromFile = TableFileManager.getTableFromFile(selectedFile);
-                        newTableOpener.accept(tableFromFile);
-                    } catch (TableFileManagerException exception) {
-                        JOptionPane.showMessageDialog(
-                                parent,
-                                exception.getMessage(),
-                                "File opening error",
-                                JOptionPane.ERROR_MESSAGE
-                        );
+                selectedFile -> openTableFile(selectedFile, newTableOpener, parent));
+    }
+
+    private static void openTableFile(File file, Consumer<ExcelTable> newTableOpener, Component parent) {
+        runInBackground(
+                parent,
+                "Opening table",
+                "File opening error",
+                tableFileProgress -> TableFileManager.getTableContentFromFile(file, tableFileProgress),
+                tableContent -> {
+                    ExcelTable tableFromFile = new ExcelTable(tableContent);
+                    if (TableFileManager.hasUnsavedChanges(tableFromFile) && JOptionPane.showConfirmDialog(
+                            parent,
+                            "Unsaved changes from a previous session were recovered. Keep them?",
+                            "Recovered changes",
+                            JOptionPane.YES_NO_OPTION
+                    ) == JOptionPane.NO_OPTION) {
+                        try {
+                            TableFileManager.closeTableJournal(tableFromFile);
+                        } catch (TableFileManagerException e) {
+                            JOptionPane.showMessageDialog(
+                                    parent,
+                                    e.getMessage(),
+                                    "Journal closing error",
+                                    JOptionPane.ERROR_MESSAGE
+                            );
+                            return;
+                        }
+                        openTableFile(file, newTableOpener, parent);
+                        return;
                     }
+                    newTableOpener.accept(tableFromFile);
                 });
     }
 
@@ -69,4 +96,46 @@ public class FileChooserFrames {
             selectedFileConsumer.accept(selectedFile);
         }
     }
+
+    private static <T> void runInBackground(Component parent,
+                                            String progressTitle,
+                                            String errorTitle,
+                                            TableFileTask<T> tableFileTask,
+                                            Consumer<T> resultConsumer) {
+        TableFileProgressFrame progressFrame = new TableFileProgressFrame(progressTitle, parent);
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws TableFileManagerException {
+                return tableFileTask.run(progressFrame.getTableFileProgress());
+            }
+
+            @Override
+            protected void done() {
+                progressFrame.dispose();
+                try {
+                    resultConsumer.accept(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(
+                            parent,
+                            e.getCause().getMessage(),
+                            errorTitle,
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                }
+            }
+        }.execute();
+    }
+
+    private interface TableSaver {
+        void save(ExcelTable table, File file, TableFileProgress tableFileProgress) throws TableFileManagerException;
+    }
+
+    private interface TableFileTask<T> {
+        T run(TableFileProgress tableFileProgress) throws TableFileManagerException;
+    }
 }
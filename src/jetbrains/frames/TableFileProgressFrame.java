@@ -0,0 +1,57 @@
+package jetbrains.frames;
+
+import jetbrains.table.TableFileProgress;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+public class TableFileProgressFrame extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    private final JProgressBar progressBar;
+    private final JButton cancelButton;
+    private final TableFileProgress tableFileProgress;
+
+    public TableFileProgressFrame(String title, Component parent) {
+        setTitle(title);
+        progressBar = new JProgressBar(0, TableFileProgress.MAX_PROGRESS);
+        progressBar.setStringPainted(true);
+        tableFileProgress = new TableFileProgress(progress -> SwingUtilities.invokeLater(() -> progressBar.setValue(progress)));
+
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> cancel());
+
+        JPanel mainPanel = new CenteredPanel(List.of(
+                new CenteredPanel.ResizableComponent(new JLabel(title), 1.0, 0.0),
+                new CenteredPanel.ResizableComponent(Box.createVerticalStrut(10), 0.0, 0.0),
+                new CenteredPanel.ResizableComponent(progressBar, 1.0, 0.0),
+                new CenteredPanel.ResizableComponent(Box.createVerticalStrut(10), 0.0, 0.0),
+                new CenteredPanel.ResizableComponent(cancelButton, 0.0, 0.0)
+        ), 0.1, 1.0);
+
+        setContentPane(mainPanel);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cancel();
+            }
+        });
+        setMinimumSize(new Dimension(400, 180));
+        setLocationRelativeTo(parent);
+        setVisible(true);
+    }
+
+    public TableFileProgress getTableFileProgress() {
+        return tableFileProgress;
+    }
+
+    private void cancel() {
+        tableFileProgress.cancel();
+        cancelButton.setEnabled(false);
+        progressBar.setString("Cancelling...");
+    }
+}
@@ -1,6 +1,9 @@
 package jetbrains.frames;
 
+import jetbrains.exceptions.TableFileManagerException;
+import jetbrains.table.CalculationMode;
 import jetbrains.table.ExcelTable;
+import jetbrains.table.TableFileManager;
 
 import javax.swing.*;
 import javax.swing.border.LineBorder;
@@ -9,6 +12,7 @@ import java.awt.event.*;
 import java.util.List;
 
 import static jetbrains.frames.FileChooserFrames.showOpenTableFileChooser;
+import static jetbrains.frames.FileChooserFrames.showSaveMappedTableFileChooser;
 import static jetbrains.frames.FileChooserFrames.showSaveTableFileChooser;
 
 public class TableFrame extends JFrame {
@@ -16,13 +20,16 @@ public class TableFrame extends JFrame {
     private Integer borderIdToResizeRow;
     private Integer oldRowHeight;
     private final int minHeight = 10;
+    private final ExcelTable table;
 
     public TableFrame(ExcelTable table) {
+        this.table = table;
         setTitle("Table");
         setUpMenuBar(table);
         setUpRowHeightResize(table);
 
         JTextField syncTextField = setUpSyncTextField(table);
+        JLabel staleCellCountLabel = setUpStaleCellCountLabel(table);
 
         table.getTableHeader().setReorderingAllowed(false);
         table.getColumn(table.getColumnName(0)).setResizable(false);
@@ -34,7 +41,9 @@ public class TableFrame extends JFrame {
         JPanel mainPanel = new CenteredPanel(List.of(
                 new CenteredPanel.ResizableComponent(syncTextField, 1.0, 0.0),
                 new CenteredPanel.ResizableComponent(Box.createVerticalStrut(10), 0.0, 0.0),
-                new CenteredPanel.ResizableComponent(scrollPane, 1.0, 1.0)
+                new CenteredPanel.ResizableComponent(scrollPane, 1.0, 1.0),
+                new CenteredPanel.ResizableComponent(Box.createVerticalStrut(5), 0.0, 0.0),
+                new CenteredPanel.ResizableComponent(staleCellCountLabel, 1.0, 0.0)
         ), 0.04, 0.0);
         mainPanel.setBorder(new LineBorder(Color.BLACK));
 
@@ -42,6 +51,12 @@ public class TableFrame extends JFrame {
         setContentPane(mainPanel);
         setMinimumSize(new Dimension(600, 500));
         setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeTableJournal();
+            }
+        });
         setVisible(true);
     }
 
@@ -77,6 +92,17 @@ public class TableFrame extends JFrame {
         return syncTextField;
     }
 
+    private JLabel setUpStaleCellCountLabel(ExcelTable table) {
+        JLabel staleCellCountLabel = new JLabel(getStaleCellCountText(table.getStaleCellCount()));
+        table.addPropertyChangeListener(ExcelTable.STALE_CELL_COUNT_PROPERTY,
+                e -> staleCellCountLabel.setText(getStaleCellCountText((int) e.getNewValue())));
+        return staleCellCountLabel;
+    }
+
+    private static String getStaleCellCountText(int staleCellCount) {
+        return staleCellCount == 0 ? "All cells are calculated" : "Stale cells: " + staleCellCount;
+    }
+
     private void setUpRowHeightResize(ExcelTable table) {
         table.addMouseListener(new MouseListener() {
             @Override
@@ -143,6 +169,7 @@ public class TableFrame extends JFrame {
         JMenu fileMenu = new JMenu("File");
         JMenuItem openFileMenuItem = new JMenuItem("Open file");
         JMenuItem saveFileMenuItem = new JMenuItem("Save file");
+        JMenuItem saveBinaryFileMenuItem = new JMenuItem("Save binary file");
         JMenuItem newTableMenuItem = new JMenuItem("New table");
 
 
@@ -151,6 +178,8 @@ public class TableFrame extends JFrame {
             showSaveTableFileChooser(table, saveFileMenuItem);
         });
 
+        saveBinaryFileMenuItem.addActionListener(e -> showSaveMappedTableFileChooser(table, saveBinaryFileMenuItem));
+
         openFileMenuItem.addActionListener(e -> {
             System.out.println("Open file " + e.toString());
             showOpenTableFileChooser(this::openNewTable, openFileMenuItem);
@@ -161,10 +190,12 @@ public class TableFrame extends JFrame {
         fileMenu.add(openFileMenuItem);
         fileMenu.addSeparator();
         fileMenu.add(saveFileMenuItem);
+        fileMenu.add(saveBinaryFileMenuItem);
         fileMenu.addSeparator();
         fileMenu.add(newTableMenuItem);
 
         menuBar.add(fileMenu);
+        menuBar.add(setUpCalculationMenu(table));
 
         menuBar.setBackground(Color.GRAY);
         menuBar.setBorder(BorderFactory.createLineBorder(Color.BLACK));
@@ -174,13 +205,47 @@ public class TableFrame extends JFrame {
 
     }
 
+    private JMenu setUpCalculationMenu(ExcelTable table) {
+        JMenu calculationMenu = new JMenu("Calculation");
+        JMenuItem recalculateMenuItem = new JMenuItem("Recalculate now");
+        recalculateMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F9, 0));
+        recalculateMenuItem.addActionListener(e -> table.calculateAllLater());
+        calculationMenu.add(recalculateMenuItem);
+        calculationMenu.addSeparator();
+
+        ButtonGroup calculationModeGroup = new ButtonGroup();
+        for (CalculationMode calculationMode : CalculationMode.values()) {
+            JRadioButtonMenuItem calculationModeMenuItem = new JRadioButtonMenuItem(calculationMode.title);
+            calculationModeMenuItem.setSelected(table.getCalculationMode() == calculationMode);
+            calculationModeMenuItem.addActionListener(e -> table.setCalculationMode(calculationMode));
+            calculationModeGroup.add(calculationModeMenuItem);
+            calculationMenu.add(calculationModeMenuItem);
+        }
+        return calculationMenu;
+    }
+
     private void openNewTable(ExcelTable newTable) {
+        closeTableJournal();
         this.dispose();
         new TableFrame(newTable);
     }
 
     private void goToTableSizeFrame() {
+        closeTableJournal();
         this.dispose();
         new TableSizeFrame();
     }
+
+    private void closeTableJournal() {
+        try {
+            TableFileManager.closeTableJournal(table);
+        } catch (TableFileManagerException exception) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    exception.getMessage(),
+                    "Journal closing error",
+                    JOptionPane.ERROR_MESSAGE
+            );
+        }
+    }
 }
@@ -0,0 +1,287 @@
+package jetbrains.table;
+
+import jetbrains.formulas.graph.FormulaDependencyGraph;
+import jetbrains.formulas.parser.CellTextType;
+import jetbrains.table.structures.CellDiapason;
+import jetbrains.table.structures.CellElement;
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellStore;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CalculationEngine {
+    private static final String THREAD_NAME = "calculation-engine";
+    private static final int IDLE_THREAD_SECONDS = 60;
+
+    private final ExcelTableContent tableContent;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong submittedVersion = new AtomicLong();
+    private final Set<CellPosition> cellPositionsToRecalculate = new LinkedHashSet<>();
+    private final Set<CellPosition> cellPositionsToCalculate = new LinkedHashSet<>();
+    private volatile CalculationMode calculationMode = CalculationMode.AUTOMATIC;
+    private long calculatedVersion = 0;
+
+    public CalculationEngine(ExcelTableContent tableContent) {
+        this.tableContent = tableContent;
+        this.executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public long updateTextsLater(Map<CellPosition, String> cellPositionToText) {
+        long version = submittedVersion.incrementAndGet();
+        executor.execute(() -> tableContent.publishLater(updateTexts(cellPositionToText, version)));
+        return version;
+    }
+
+    public TableSnapshot updateTextsAndWait(Map<CellPosition, String> cellPositionToText) {
+        long version = submittedVersion.incrementAndGet();
+        return submitAndWait(() -> updateTexts(cellPositionToText, version));
+    }
+
+    public void calculateLater(CellPosition cellPosition) {
+        synchronized (cellPositionsToCalculate) {
+            if (!cellPositionsToCalculate.add(cellPosition) || cellPositionsToCalculate.size() > 1) {
+                return;
+            }
+        }
+        executor.execute(() -> {
+            List<CellPosition> cellPositions;
+            synchronized (cellPositionsToCalculate) {
+                cellPositions = new ArrayList<>(cellPositionsToCalculate);
+                cellPositionsToCalculate.clear();
+            }
+            tableContent.publishLater(calculateDirtyCells(cellPositions));
+        });
+    }
+
+    public void calculateAllLater() {
+        long version = submittedVersion.incrementAndGet();
+        executor.execute(() -> tableContent.publishLater(calculateAll(version)));
+    }
+
+    public TableSnapshot calculateAllAndWait() {
+        long version = submittedVersion.incrementAndGet();
+        return submitAndWait(() -> calculateAll(version));
+    }
+
+    public CellStore.FrozenTileSet freezeCellStoreAndWait() {
+        return submitAndWait(() -> {
+            TableJournal tableJournal = tableContent.getTableJournal();
+            if (tableJournal != null) {
+                tableJournal.mark();
+            }
+            return tableContent.getCellStore().freeze();
+        });
+    }
+
+    public int getDirtyCountAndWait() {
+        return submitAndWait(() -> tableContent.getCellStore().getDirtyCount());
+    }
+
+    public boolean isDirtyAndWait(CellPosition cellPosition) {
+        return submitAndWait(() -> tableContent.getCellStore().isDirty(cellPosition.row, cellPosition.column - 1));
+    }
+
+    public double getValueAndWait(CellPosition cellPosition) {
+        return submitAndWait(() -> tableContent.getCellStore().getValue(cellPosition.row, cellPosition.column - 1));
+    }
+
+    public int getTileCountAndWait() {
+        return submitAndWait(() -> tableContent.getCellStore().getTileCount());
+    }
+
+    public void restoreTableJournalAndWait(TableJournal pendingTableJournal, TableJournal previousTableJournal) {
+        submitAndWait(() -> {
+            tableContent.setTableJournal(previousTableJournal);
+            if (previousTableJournal != null) {
+                pendingTableJournal.commit();
+                pendingTableJournal.replay(Integer.MAX_VALUE, previousTableJournal::append);
+            }
+            return null;
+        });
+    }
+
+    public CalculationMode getCalculationMode() {
+        return calculationMode;
+    }
+
+    public void setCalculationMode(CalculationMode calculationMode) {
+        this.calculationMode = calculationMode;
+        if (calculationMode == CalculationMode.AUTOMATIC) {
+            calculateAllLater();
+        }
+    }
+
+    private <T> T submitAndWait(Callable<T> calculation) {
+        Future<T> result = executor.submit(calculation);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for recalculation.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    TableSnapshot updateTexts(Map<CellPosition, String> cellPositionToText, long version) {
+        CellStore cellStore = tableContent.getCellStore();
+        TableJournal tableJournal = tableContent.getTableJournal();
+        if (tableJournal != null) {
+            Map<CellPosition, String> journalCellPositionToText = new LinkedHashMap<>();
+            cellPositionToText.forEach((cellPosition, text) ->
+                    journalCellPositionToText.put(new CellPosition(cellPosition.row, cellPosition.column - 1), text));
+            tableJournal.append(journalCellPositionToText);
+        }
+        cellPositionToText.forEach((cellPosition, text) -> {
+            tableContent.getFormulaDependencyGraph().removeIncomingEdges(cellPosition);
+            CellElement cell = new CellElement(cellPosition, "", tableContent);
+            cellStore.put(cellPosition.row, cellPosition.column - 1, cell);
+            cell.loadText(text);
+            if (CellTextType.getCellTextType(text) == CellTextType.EMPTY) {
+                cellStore.remove(cellPosition.row, cellPosition.column - 1);
+            }
+        });
+        List<CellPosition> updatedCellPositions = new ArrayList<>(cellPositionToText.keySet());
+        updatedCellPositions.addAll(recalculate(cellPositionToText.keySet(), version));
+        calculatedVersion = version;
+        return getTableSnapshot(updatedCellPositions);
+    }
+
+    TableSnapshot calculateAll(long version) {
+        List<CellPosition> cellPositions = new ArrayList<>();
+        tableContent.getCellStore().forEachDirty(cell -> cellPositions.add(cell.cellPosition));
+        List<CellPosition> updatedCellPositions = recalculate(cellPositions, CalculationMode.AUTOMATIC, version);
+        calculatedVersion = version;
+        return getTableSnapshot(updatedCellPositions);
+    }
+
+    List<CellPosition> recalculate(Collection<CellPosition> cellPositions, long version) {
+        return recalculate(cellPositions, calculationMode, version);
+    }
+
+    private List<CellPosition> recalculate(Collection<CellPosition> cellPositions, CalculationMode calculationMode, long version) {
+        cellPositionsToRecalculate.addAll(cellPositions);
+        List<CellPosition> updatedCellPositions = new ArrayList<>();
+        if (isSuperseded(version)) {
+            return updatedCellPositions;
+        }
+        FormulaDependencyGraph.CalculateOrder calculateOrder =
+                tableContent.getFormulaDependencyGraph().getCalculateOrder(cellPositionsToRecalculate);
+        cellPositionsToRecalculate.clear();
+        List<List<CellPosition>> levels = calculateOrder.getLevels();
+        if (calculationMode != CalculationMode.AUTOMATIC) {
+            levels = markDirty(levels, calculationMode, updatedCellPositions);
+        }
+        int calculatedLevelCount = tableContent.getFormulaRecalculator().recalculate(levels, tableContent, () -> isSuperseded(version));
+        for (int levelId = 0; levelId < levels.size(); levelId++) {
+            if (levelId < calculatedLevelCount) {
+                levels.get(levelId).forEach(cellPosition -> {
+                    tableContent.getCellStore().setDirty(cellPosition.row, cellPosition.column - 1, false);
+                    updatedCellPositions.add(cellPosition);
+                });
+            } else {
+                cellPositionsToRecalculate.addAll(levels.get(levelId));
+            }
+        }
+        addCyclicCellPositions(calculateOrder, updatedCellPositions);
+        return updatedCellPositions;
+    }
+
+    private void addCyclicCellPositions(FormulaDependencyGraph.CalculateOrder calculateOrder,
+                                        List<CellPosition> updatedCellPositions) {
+        for (CellPosition cellPosition : calculateOrder.cyclicCellPositions) {
+            CellElement cell = tableContent.getCellElement(cellPosition.row, cellPosition.column - 1);
+            if (cell != null) {
+                tableContent.getCellStore().setDirty(cellPosition.row, cellPosition.column - 1, false);
+                cell.setErrorMessage(FormulaDependencyGraph.CYCLIC_DEPENDENCY_MESSAGE);
+            }
+            updatedCellPositions.add(cellPosition);
+        }
+    }
+
+    private List<List<CellPosition>> markDirty(List<List<CellPosition>> levels,
+                                               CalculationMode calculationMode,
+                                               List<CellPosition> updatedCellPositions) {
+        CellStore cellStore = tableContent.getCellStore();
+        List<List<CellPosition>> levelsToCalculate = new ArrayList<>();
+        for (List<CellPosition> level : levels) {
+            List<CellPosition> levelToCalculate = new ArrayList<>();
+            for (CellPosition cellPosition : level) {
+                CellElement cell = cellStore.get(cellPosition.row, cellPosition.column - 1);
+                if (cell != null && cell.isValidFormula() && !calculationMode.isCalculatedOnEdit(cell)) {
+                    cellStore.setDirty(cellPosition.row, cellPosition.column - 1, true);
+                    updatedCellPositions.add(cellPosition);
+                } else {
+                    cellStore.setDirty(cellPosition.row, cellPosition.column - 1, false);
+                    levelToCalculate.add(cellPosition);
+                }
+            }
+            if (!levelToCalculate.isEmpty()) {
+                levelsToCalculate.add(levelToCalculate);
+            }
+        }
+        return levelsToCalculate;
+    }
+
+    TableSnapshot calculateDirtyCells(Collection<CellPosition> cellPositions) {
+        CellStore cellStore = tableContent.getCellStore();
+        List<CellPosition> updatedCellPositions = new ArrayList<>();
+        Deque<CellElement> cellStack = new ArrayDeque<>();
+        Set<CellElement> expandedCells = new HashSet<>();
+        Set<CellPosition> cellPositionsInFormula = new HashSet<>();
+        Set<CellDiapason> cellDiapasonsInFormula = new HashSet<>();
+        for (CellPosition cellPosition : cellPositions) {
+            CellElement cell = cellStore.get(cellPosition.row, cellPosition.column - 1);
+            if (cell != null) {
+                cellStack.push(cell);
+            }
+        }
+        while (!cellStack.isEmpty()) {
+            CellElement cell = cellStack.peek();
+            int row = cell.cellPosition.row;
+            int column = cell.cellPosition.column - 1;
+            if (!cellStore.isDirty(row, column)) {
+                cellStack.pop();
+            } else if (expandedCells.add(cell)) {
+                cellPositionsInFormula.clear();
+                cellDiapasonsInFormula.clear();
+                cell.addAllCellPositionsInFormula(cellPositionsInFormula);
+                cell.addAllCellDiapasonsInFormula(cellDiapasonsInFormula);
+                for (CellPosition cellPosition : cellPositionsInFormula) {
+                    if (cellStore.isDirty(cellPosition.row, cellPosition.column - 1)) {
+                        cellStack.push(cellStore.get(cellPosition.row, cellPosition.column - 1));
+                    }
+                }
+                for (CellDiapason cellDiapason : cellDiapasonsInFormula) {
+                    cellStore.forEachDirty(cellDiapason.fromCellPosition.row, cellDiapason.fromCellPosition.column - 1,
+                            cellDiapason.toCellPosition.row, cellDiapason.toCellPosition.column - 1, cellStack::push);
+                }
+            } else {
+                cellStack.pop();
+                cellStore.setDirty(row, column, false);
+                cell.calculateFormulaValue();
+                updatedCellPositions.add(cell.cellPosition);
+            }
+        }
+        return getTableSnapshot(updatedCellPositions);
+    }
+
+    private TableSnapshot getTableSnapshot(List<CellPosition> updatedCellPositions) {
+        return new TableSnapshot(tableContent.getCellStore().freeze(), updatedCellPositions, calculatedVersion);
+    }
+
+    private boolean isSuperseded(long version) {
+        return submittedVersion.get() > version;
+    }
+}
@@ -0,0 +1,60 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellElement;
+
+public enum CalculationMode {
+    AUTOMATIC("Automatic") {
+        @Override
+        public boolean isCalculatedOnEdit(CellElement cell) {
+            return true;
+        }
+
+        @Override
+        public boolean isCalculatedOnRead() {
+            return false;
+        }
+    },
+    AUTOMATIC_EXCEPT_RANGES("Automatic except ranges") {
+        @Override
+        public boolean isCalculatedOnEdit(CellElement cell) {
+            return !cell.hasCellDiapasonsInFormula() && !cell.hasDirtyCellPositionsInFormula();
+        }
+
+        @Override
+        public boolean isCalculatedOnRead() {
+            return false;
+        }
+    },
+    MANUAL("Manual") {
+        @Override
+        public boolean isCalculatedOnEdit(CellElement cell) {
+            return false;
+        }
+
+        @Override
+        public boolean isCalculatedOnRead() {
+            return false;
+        }
+    },
+    LAZY("Lazy") {
+        @Override
+        public boolean isCalculatedOnEdit(CellElement cell) {
+            return false;
+        }
+
+        @Override
+        public boolean isCalculatedOnRead() {
+            return true;
+        }
+    };
+
+    public final String title;
+
+    CalculationMode(String title) {
+        this.title = title;
+    }
+
+    abstract public boolean isCalculatedOnEdit(CellElement cell);
+
+    abstract public boolean isCalculatedOnRead();
+}
@@ -1,9 +1,10 @@
 package jetbrains.table;
 
-import jetbrains.formulas.graph.FormulaDependencyGraph;
+import jetbrains.formulas.parser.CellTextType;
 import jetbrains.formulas.parser.LexicalAnalyzer;
-import jetbrains.table.structures.CellElement;
 import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellStore;
+import jetbrains.table.structures.CellSnapshot;
 import jetbrains.table.structures.CopyCellInfo;
 import jetbrains.table.structures.UpdateAction;
 
@@ -13,37 +14,46 @@ import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import java.util.EventObject;
-import java.util.Stack;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class ExcelTable extends JTable {
+    public static final String STALE_CELL_COUNT_PROPERTY = "staleCellCount";
+
     private JTextField textFieldToSynchronize;
     private boolean isEditFromTextFieldSynchronize;
-    private final CellElement[][] tableCells;
-    private final FormulaDependencyGraph formulaDependencyGraph = new FormulaDependencyGraph();
-
+    private final ExcelTableModel tableModel;
+    private final ExcelTableContent tableContent;
+    private final MappedTableFile tableFile;
+    private final CalculationEngine calculationEngine;
+    private final Map<CellPosition, CellSnapshot> pendingCellSnapshots = new HashMap<>();
+    private CellStore.FrozenTileSet frozenTileSet;
+    private int staleCellCount = 0;
     private CopyCellInfo copyCellInfo;
     private CellPosition lastEditCellPosition;
     private CellPosition selectedCellPosition;
 
     private final Stack<UpdateAction> updateActionsToBackUp = new Stack<>();
 
-    public ExcelTable(String[][] tableData, String[] columnHeader) {
-        super(tableData, columnHeader);
-        tableCells = new CellElement[getRowCount()][getColumnCount()];
-        for (int i = 0; i < tableData.length; i++) {
-            for (int j = 1; j < tableData[i].length; j++) {
-                tableCells[i][j - 1] = new CellElement(new CellPosition(i, j), tableData[i][j], this);
-            }
-        }
+    public ExcelTable(int rows, int columns) {
+        this(new ExcelTableContent(rows, columns));
+    }
+
+    public ExcelTable(ExcelTableContent tableContent) {
+        super(new ExcelTableModel(tableContent.getRowCount(), tableContent.getColumnCount(), tableContent.getTableFile()));
+        this.tableModel = (ExcelTableModel) getModel();
+        this.tableContent = tableContent;
+        this.tableFile = tableContent.getTableFile();
+        this.calculationEngine = tableContent.getCalculationEngine();
 
         getActionMap().put("copy", new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (isCellEditable(getSelectedRow(), getSelectedColumn())) {
-                    CellElement cell = tableCells[getSelectedRow()][getSelectedColumn() - 1];
-                    copyCellInfo = new CopyCellInfo(cell.text, cell.cellPosition, cell.isValidFormula());
-                    System.out.println("Copied text: " + cell.text);
+                    CellSnapshot cellSnapshot = getCellSnapshot(new CellPosition(getSelectedRow(), getSelectedColumn()));
+                    copyCellInfo = new CopyCellInfo(cellSnapshot.text, cellSnapshot.cellPosition, cellSnapshot.isValidFormula);
+                    System.out.println("Copied text: " + cellSnapshot.text);
                 }
             }
         });
@@ -53,11 +63,11 @@ public class ExcelTable extends JTable {
             public void actionPerformed(ActionEvent e) {
                 if (copyCellInfo != null && isCellEditable(getSelectedRow(), getSelectedColumn())) {
                     String textToPaste = copyCellInfo.textToCopy;
+                    CellPosition pasteCell = new CellPosition(getSelectedRow(), getSelectedColumn());
                     if (copyCellInfo.isValidFormula) {
-                        CellPosition pasteCell = tableCells[getSelectedRow()][getSelectedColumn() - 1].cellPosition;
                         textToPaste = LexicalAnalyzer.getFormulaWithShiftedCells(copyCellInfo.textToCopy, copyCellInfo.cellCopyFrom, pasteCell);
                     }
-                    tableCells[getSelectedRow()][getSelectedColumn() - 1].updateText(textToPaste, true);
+                    updateTextLater(pasteCell, textToPaste, true);
                     System.out.println("Pasted text: " + textToPaste);
                 }
             }
@@ -69,14 +79,14 @@ public class ExcelTable extends JTable {
                 if (!updateActionsToBackUp.isEmpty()) {
                     UpdateAction updateAction = updateActionsToBackUp.pop();
                     CellPosition cellPositionToBackUp = updateAction.cellPosition;
-                    tableCells[cellPositionToBackUp.row][cellPositionToBackUp.column - 1]
-                            .updateText(updateAction.oldText, false);
+                    updateTextLater(cellPositionToBackUp, updateAction.oldText, false);
                 }
                 System.out.println("Undo");
             }
         });
 
         getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        publish(tableContent.attachTable(this));
     }
 
     @Override
@@ -84,23 +94,33 @@ public class ExcelTable extends JTable {
         return column != 0;
     }
 
+    @Override
+    public Object getValueAt(int row, int column) {
+        CellPosition cellPosition = new CellPosition(convertRowIndexToModel(row), convertColumnIndexToModel(column));
+        if (cellPosition.column != 0 && frozenTileSet.isDirty(cellPosition.row, cellPosition.column - 1) &&
+                calculationEngine.getCalculationMode().isCalculatedOnRead()) {
+            calculationEngine.calculateLater(cellPosition);
+        }
+        return super.getValueAt(row, column);
+    }
+
     @Override
     public boolean editCellAt(int row, int column, EventObject eventObject) {
         if (isCellEditable(row, column)) {
             if (selectedCellPosition != null && isEditFromTextFieldSynchronize) {
                 isEditFromTextFieldSynchronize = false;
                 String text = (String) getValueAt(selectedCellPosition.row, selectedCellPosition.column);
-                tableCells[selectedCellPosition.row][selectedCellPosition.column - 1].updateText(text, true);
+                updateTextLater(selectedCellPosition, text, true);
             }
-            selectedCellPosition = tableCells[row][column - 1].cellPosition;
+            selectedCellPosition = new CellPosition(row, column);
             if ((eventObject instanceof MouseEvent && ((MouseEvent) eventObject).getClickCount() == 2) ||
                     (eventObject instanceof KeyEvent && !((KeyEvent) eventObject).isActionKey())) {
                 System.out.println("START EDITING " + row + " " + column);
-                setValueAt(tableCells[row][column - 1].text, row, column);
-                updateTextFieldToSynchronize(tableCells[row][column - 1].text);
+                setValueAt(getCellSnapshot(selectedCellPosition).text, row, column);
+                updateTextFieldToSynchronize(getCellSnapshot(selectedCellPosition).text);
                 lastEditCellPosition = new CellPosition(row, column);
             } else {
-                updateTextFieldToSynchronize(tableCells[row][column - 1].getTextToSyncTextField());
+                updateTextFieldToSynchronize(getCellSnapshot(selectedCellPosition).textToSyncTextField);
             }
         }
         return super.editCellAt(row, column, eventObject);
@@ -113,18 +133,139 @@ public class ExcelTable extends JTable {
         int row = lastEditCellPosition.row;
         int column = lastEditCellPosition.column;
         String newText = (String) getValueAt(row, column);
-        tableCells[row][column - 1].updateText(newText, true);
-        updateTextFieldToSynchronize(tableCells[row][column - 1].getTextToSyncTextField());
+        updateTextLater(lastEditCellPosition, newText, true);
+        updateTextFieldToSynchronize(getCellSnapshot(lastEditCellPosition).textToSyncTextField);
+    }
+
+    private void updateTextLater(CellPosition cellPosition, String text, boolean isSaveToBackUp) {
+        CellSnapshot cellSnapshot = getCellSnapshot(cellPosition);
+        if (isSaveToBackUp && !Objects.equals(cellSnapshot.text, text)) {
+            updateActionsToBackUp.add(new UpdateAction(cellPosition, cellSnapshot.text));
+        }
+        long version = calculationEngine.updateTextsLater(Map.of(cellPosition, text));
+        pendingCellSnapshots.put(cellPosition, new CellSnapshot(cellPosition, text, cellSnapshot.textToCell,
+                text, CellTextType.getCellTextType(text) == CellTextType.FORMULA, cellSnapshot.isDirty, version));
+    }
+
+    void publishLater(TableSnapshot tableSnapshot) {
+        SwingUtilities.invokeLater(() -> publish(tableSnapshot));
+    }
+
+    private void publishAndWait(TableSnapshot tableSnapshot) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            publish(tableSnapshot);
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(() -> publish(tableSnapshot));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
     }
 
+    private void publish(TableSnapshot tableSnapshot) {
+        int oldStaleCellCount = staleCellCount;
+        String oldTextToSyncTextField = selectedCellPosition == null ? null
+                : getCellSnapshot(selectedCellPosition).textToSyncTextField;
+        CellStore.FrozenTileSet oldFrozenTileSet = frozenTileSet;
+        frozenTileSet = tableSnapshot.frozenTileSet;
+        tableModel.setCellSource(frozenTileSet);
+        if (oldFrozenTileSet != null) {
+            oldFrozenTileSet.close();
+        }
+        pendingCellSnapshots.values().removeIf(cellSnapshot -> {
+            if (cellSnapshot.version > tableSnapshot.version) {
+                return false;
+            }
+            tableModel.removePendingValueAt(cellSnapshot.cellPosition.row, cellSnapshot.cellPosition.column);
+            return true;
+        });
+        for (CellPosition cellPosition : tableSnapshot.updatedCellPositions) {
+            tableModel.updateValueAt(cellPosition.row, cellPosition.column);
+        }
+        staleCellCount = frozenTileSet.getDirtyCount();
+        tableModel.fireUpdatedValues();
+        if (selectedCellPosition != null) {
+            String textToSyncTextField = getCellSnapshot(selectedCellPosition).textToSyncTextField;
+            if (!Objects.equals(oldTextToSyncTextField, textToSyncTextField)) {
+                updateTextFieldToSynchronize(textToSyncTextField);
+            }
+        }
+        firePropertyChange(STALE_CELL_COUNT_PROPERTY, oldStaleCellCount, staleCellCount);
+    }
 
+    private CellSnapshot getCellSnapshot(CellPosition cellPosition) {
+        CellSnapshot cellSnapshot = pendingCellSnapshots.get(cellPosition);
+        if (cellSnapshot != null) {
+            return cellSnapshot;
+        }
+        int row = cellPosition.row;
+        int column = cellPosition.column - 1;
+        if (column < 0 || !frozenTileSet.hasCell(row, column)) {
+            return CellSnapshot.getEmptySnapshot(cellPosition);
+        }
+        String text = frozenTileSet.getText(row, column);
+        String textToSyncTextField = frozenTileSet.hasError(row, column) && CellTextType.getCellTextType(text) == CellTextType.FORMULA
+                ? frozenTileSet.getErrorMessage(row, column)
+                : text;
+        return new CellSnapshot(cellPosition, text, frozenTileSet.getTextToCell(row, column), textToSyncTextField,
+                frozenTileSet.isValidFormula(row, column), frozenTileSet.isDirty(row, column), 0);
+    }
 
     public String getTextAt(int row, int column) {
-        return tableCells[row][column].text;
+        return getCellSnapshot(new CellPosition(row, column + 1)).text;
+    }
+
+    public Map<CellPosition, String> getTextsAt() {
+        List<CellPosition> cellPositions = new ArrayList<>();
+        frozenTileSet.forEachCellPosition(cellPosition -> {
+            if (!pendingCellSnapshots.containsKey(new CellPosition(cellPosition.row, cellPosition.column + 1))) {
+                cellPositions.add(cellPosition);
+            }
+        });
+        for (CellSnapshot cellSnapshot : pendingCellSnapshots.values()) {
+            cellPositions.add(new CellPosition(cellSnapshot.cellPosition.row, cellSnapshot.cellPosition.column - 1));
+        }
+        cellPositions.sort(Comparator.<CellPosition>comparingInt(cellPosition -> cellPosition.row)
+                .thenComparingInt(cellPosition -> cellPosition.column));
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (CellPosition cellPosition : cellPositions) {
+            String text = getTextAt(cellPosition.row, cellPosition.column);
+            if (!text.isEmpty()) {
+                cellPositionToText.put(cellPosition, text);
+            }
+        }
+        return cellPositionToText;
     }
 
     public void setTextAt(int row, int column, String text) {
-        tableCells[row][column].updateText(text, false);
+        setTextsAt(Map.of(new CellPosition(row, column), text));
+    }
+
+    public void setTextsAt(Map<CellPosition, String> cellPositionToText) {
+        publishAndWait(calculationEngine.updateTextsAndWait(ExcelTableContent.getTableCellPositionToText(cellPositionToText)));
+    }
+
+    public void calculateAll() {
+        publishAndWait(calculationEngine.calculateAllAndWait());
+    }
+
+    public void calculateAllLater() {
+        calculationEngine.calculateAllLater();
+    }
+
+    public CalculationMode getCalculationMode() {
+        return calculationEngine.getCalculationMode();
+    }
+
+    public void setCalculationMode(CalculationMode calculationMode) {
+        calculationEngine.setCalculationMode(calculationMode);
+    }
+
+    public int getStaleCellCount() {
+        return staleCellCount;
     }
 
     public Integer getRowBorderId(int x, int y) {
@@ -166,20 +307,40 @@ public class ExcelTable extends JTable {
 
     public String getSelectedCellText() {
         if (selectedCellPosition != null) {
-            return tableCells[selectedCellPosition.row][selectedCellPosition.column - 1].text;
+            return getCellSnapshot(selectedCellPosition).text;
         }
         return "";
     }
 
-    public FormulaDependencyGraph getFormulaDependencyGraph() {
-        return formulaDependencyGraph;
-    }
-
     public Stack<UpdateAction> getUpdateActionsToBackUp() {
         return updateActionsToBackUp;
     }
 
-    public CellElement getCellElement(int row, int column) {
-        return tableCells[row][column];
+    public ExcelTableContent getTableContent() {
+        return tableContent;
+    }
+
+    public CalculationEngine getCalculationEngine() {
+        return calculationEngine;
+    }
+
+    public FormulaRecalculator getFormulaRecalculator() {
+        return tableContent.getFormulaRecalculator();
+    }
+
+    public void setRecalculationPool(ForkJoinPool forkJoinPool) {
+        tableContent.setRecalculationPool(forkJoinPool);
+    }
+
+    public TableJournal getTableJournal() {
+        return tableContent.getTableJournal();
+    }
+
+    public void setTableJournal(TableJournal tableJournal) {
+        tableContent.setTableJournal(tableJournal);
+    }
+
+    public MappedTableFile getTableFile() {
+        return tableFile;
     }
 }
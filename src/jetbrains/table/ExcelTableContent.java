@@ -0,0 +1,146 @@
+package jetbrains.table;
+
+import jetbrains.formulas.calculator.CellValueJournal;
+import jetbrains.formulas.calculator.ValueSource;
+import jetbrains.formulas.calculator.indexes.ColumnIndexes;
+import jetbrains.formulas.graph.FormulaDependencyGraph;
+import jetbrains.table.structures.CellElement;
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellStore;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class ExcelTableContent {
+    private final int rowCount;
+    private final int columnCount;
+    private final MappedTableFile tableFile;
+    private final CellStore cellStore;
+    private final CalculationEngine calculationEngine = new CalculationEngine(this);
+    private final FormulaDependencyGraph formulaDependencyGraph = new FormulaDependencyGraph();
+    private final CellValueJournal cellValueJournal = new CellValueJournal();
+    private final ColumnIndexes columnIndexes;
+    private FormulaRecalculator formulaRecalculator = new FormulaRecalculator(ForkJoinPool.commonPool());
+    private final ValueSource valueSource = new ValueSource() {
+        @Override
+        public double getValue(int row, int column) {
+            if (row < 0 || row >= rowCount || column < 1 || column > columnCount) {
+                throw new IndexOutOfBoundsException("Cell (" + row + ", " + column + ") is outside the table.");
+            }
+            return cellStore.getValue(row, column - 1);
+        }
+
+        @Override
+        public CellValueJournal getCellValueJournal() {
+            return cellValueJournal;
+        }
+
+        @Override
+        public ColumnIndexes getColumnIndexes() {
+            return columnIndexes;
+        }
+    };
+
+    private volatile TableJournal tableJournal;
+    private ExcelTable table;
+    private TableSnapshot tableSnapshot;
+
+    public ExcelTableContent(int rows, int columns) {
+        this(rows, columns, null);
+    }
+
+    public ExcelTableContent(MappedTableFile tableFile) {
+        this(tableFile.getRowCount(), tableFile.getColumnCount(), tableFile);
+    }
+
+    private ExcelTableContent(int rows, int columns, MappedTableFile tableFile) {
+        this.rowCount = rows;
+        this.columnCount = columns;
+        this.tableFile = tableFile;
+        this.cellStore = new CellStore(tableFile, this);
+        this.columnIndexes = new ColumnIndexes(rows, columns + 1);
+        this.tableSnapshot = new TableSnapshot(cellStore.freeze(), List.of(), 0);
+    }
+
+    public void loadTextsAt(Map<CellPosition, String> cellPositionToText) {
+        publishLater(calculationEngine.updateTextsAndWait(getTableCellPositionToText(cellPositionToText)));
+    }
+
+    static Map<CellPosition, String> getTableCellPositionToText(Map<CellPosition, String> cellPositionToText) {
+        Map<CellPosition, String> tableCellPositionToText = new LinkedHashMap<>();
+        cellPositionToText.forEach((cellPosition, text) ->
+                tableCellPositionToText.put(new CellPosition(cellPosition.row, cellPosition.column + 1), text));
+        return tableCellPositionToText;
+    }
+
+    synchronized TableSnapshot attachTable(ExcelTable table) {
+        this.table = table;
+        TableSnapshot attachedTableSnapshot = tableSnapshot;
+        tableSnapshot = null;
+        return attachedTableSnapshot;
+    }
+
+    synchronized void publishLater(TableSnapshot tableSnapshot) {
+        if (table == null) {
+            this.tableSnapshot.frozenTileSet.close();
+            this.tableSnapshot = tableSnapshot;
+        } else {
+            table.publishLater(tableSnapshot);
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public FormulaDependencyGraph getFormulaDependencyGraph() {
+        return formulaDependencyGraph;
+    }
+
+    public void onCellValueChanged(CellPosition cellPosition, double oldValue, double newValue) {
+        cellValueJournal.add(cellPosition.row, cellPosition.column, oldValue, newValue);
+        columnIndexes.onValueChanged(cellPosition.row, cellPosition.column, newValue);
+    }
+
+    public CalculationEngine getCalculationEngine() {
+        return calculationEngine;
+    }
+
+    public FormulaRecalculator getFormulaRecalculator() {
+        return formulaRecalculator;
+    }
+
+    public void setRecalculationPool(ForkJoinPool forkJoinPool) {
+        formulaRecalculator = new FormulaRecalculator(forkJoinPool);
+    }
+
+    public ValueSource getValueSource() {
+        return valueSource;
+    }
+
+    public CellElement getCellElement(int row, int column) {
+        return cellStore.get(row, column);
+    }
+
+    public TableJournal getTableJournal() {
+        return tableJournal;
+    }
+
+    public void setTableJournal(TableJournal tableJournal) {
+        this.tableJournal = tableJournal;
+    }
+
+    public MappedTableFile getTableFile() {
+        return tableFile;
+    }
+
+    public CellStore getCellStore() {
+        return cellStore;
+    }
+}
@@ -0,0 +1,107 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellSource;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ExcelTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    public static final int MIN_CELLS_TO_UPDATE_ALL_ROWS = 4096;
+    private static final int NONE = -1;
+
+    private final int rowCount;
+    private final int columnCount;
+    private final Map<CellPosition, String> cellPositionToPendingValue = new HashMap<>();
+    private CellSource cellSource;
+    private int updatedCellCount = 0;
+    private int updatedFromRow = Integer.MAX_VALUE;
+    private int updatedToRow = NONE;
+    private int updatedColumn = NONE;
+
+    public ExcelTableModel(int rowCount, int columnCount) {
+        this(rowCount, columnCount, null);
+    }
+
+    public ExcelTableModel(int rowCount, int columnCount, CellSource cellSource) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.cellSource = cellSource;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount + 1;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == 0 ? "" : TableGenerator.getColumnNameById(column - 1);
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return row + 1 + "";
+        }
+        String pendingValue = cellPositionToPendingValue.get(new CellPosition(row, column));
+        if (pendingValue != null) {
+            return pendingValue;
+        }
+        if (cellSource != null && cellSource.hasCell(row, column - 1)) {
+            return cellSource.getTextToCell(row, column - 1);
+        }
+        return "";
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column != 0;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        cellPositionToPendingValue.put(new CellPosition(row, column), value == null ? "" : (String) value);
+        fireTableCellUpdated(row, column);
+    }
+
+    public void setCellSource(CellSource cellSource) {
+        this.cellSource = cellSource;
+    }
+
+    public void removePendingValueAt(int row, int column) {
+        if (cellPositionToPendingValue.remove(new CellPosition(row, column)) != null) {
+            updateValueAt(row, column);
+        }
+    }
+
+    public void updateValueAt(int row, int column) {
+        updatedColumn = updatedCellCount == 0 || updatedColumn == column ? column : TableModelEvent.ALL_COLUMNS;
+        updatedCellCount++;
+        updatedFromRow = Math.min(updatedFromRow, row);
+        updatedToRow = Math.max(updatedToRow, row);
+    }
+
+    public void fireUpdatedValues() {
+        if (updatedCellCount == 0) {
+            return;
+        }
+        if (updatedCellCount >= MIN_CELLS_TO_UPDATE_ALL_ROWS) {
+            fireTableRowsUpdated(0, getRowCount() - 1);
+        } else {
+            fireTableChanged(new TableModelEvent(this, updatedFromRow, updatedToRow, updatedColumn));
+        }
+        updatedCellCount = 0;
+        updatedFromRow = Integer.MAX_VALUE;
+        updatedToRow = NONE;
+        updatedColumn = NONE;
+    }
+}
@@ -0,0 +1,89 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellElement;
+import jetbrains.table.structures.CellPosition;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+public class FormulaRecalculator {
+    public static final int MIN_CELLS_TO_PARALLELIZE = 256;
+    private static final int MIN_CELLS_PER_TASK = 64;
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final ForkJoinPool forkJoinPool;
+
+    public FormulaRecalculator(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public void recalculate(List<List<CellPosition>> levels, ExcelTableContent tableContent) {
+        recalculate(levels, tableContent, () -> false);
+    }
+
+    public int recalculate(List<List<CellPosition>> levels, ExcelTableContent tableContent, BooleanSupplier isCancelled) {
+        for (int levelId = 0; levelId < levels.size(); levelId++) {
+            if (isCancelled.getAsBoolean()) {
+                return levelId;
+            }
+            List<CellPosition> level = levels.get(levelId);
+            CellElement[] cells = new CellElement[level.size()];
+            int cellCount = 0;
+            for (CellPosition cellPosition : level) {
+                CellElement cell = tableContent.getCellElement(cellPosition.row, cellPosition.column - 1);
+                if (cell != null && cell.isValidFormula()) {
+                    cells[cellCount++] = cell;
+                }
+            }
+            if (cellCount < MIN_CELLS_TO_PARALLELIZE || forkJoinPool.getParallelism() == 1) {
+                evaluateFormulaValues(cells, 0, cellCount);
+            } else {
+                int cellsPerTask = Math.max(MIN_CELLS_PER_TASK, cellCount / (TASKS_PER_THREAD * forkJoinPool.getParallelism()));
+                forkJoinPool.invoke(new EvaluateFormulaValuesAction(cells, 0, cellCount, cellsPerTask));
+            }
+            for (int i = 0; i < cellCount; i++) {
+                cells[i].applyFormulaValue();
+            }
+        }
+        return levels.size();
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    private static void evaluateFormulaValues(CellElement[] cells, int fromId, int toId) {
+        for (int i = fromId; i < toId; i++) {
+            cells[i].evaluateFormulaValue();
+        }
+    }
+
+    private static class EvaluateFormulaValuesAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CellElement[] cells;
+        private final int fromId;
+        private final int toId;
+        private final int cellsPerTask;
+
+        private EvaluateFormulaValuesAction(CellElement[] cells, int fromId, int toId, int cellsPerTask) {
+            this.cells = cells;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.cellsPerTask = cellsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId <= cellsPerTask) {
+                evaluateFormulaValues(cells, fromId, toId);
+                return;
+            }
+            int middleId = (fromId + toId) >>> 1;
+            invokeAll(new EvaluateFormulaValuesAction(cells, fromId, middleId, cellsPerTask),
+                    new EvaluateFormulaValuesAction(cells, middleId, toId, cellsPerTask));
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package jetbrains.table;
+
+import jetbrains.exceptions.TableFileManagerException;
+import jetbrains.formulas.graph.FormulaDependencyGraph;
+import jetbrains.table.structures.CellDiapason;
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellSource;
+import jetbrains.table.structures.CellStore;
+import jetbrains.table.structures.SavedCellInfo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class MappedTableFile implements CellSource {
+    public static final int MAGIC = 0x54424C42;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int TILE_ROW_BITS = 4;
+    private static final int TILE_COLUMN_BITS = 2;
+    private static final int TILE_ROWS = 1 << TILE_ROW_BITS;
+    private static final int TILE_COLUMNS = 1 << TILE_COLUMN_BITS;
+    private static final int TILE_HEADER_SIZE = 32;
+    private static final int CELL_ENTRY_SIZE = 24;
+    private static final int FORMULA_HEADER_SIZE = 20;
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long NONE = -1;
+    private static final String FORMULA_FILE_EXTENSION = ".formulas";
+
+    private final MappedByteBuffer[] segments;
+    private final long fileSize;
+    private final int rowCount;
+    private final int columnCount;
+    private final int tileRowCount;
+    private final long tileCount;
+    private final long formulaCount;
+    private final long tileRowIndexOffset;
+    private final long tileColumnsOffset;
+    private final long tileOffsetsOffset;
+    private final long formulaOffset;
+
+    private MappedTableFile(MappedByteBuffer[] segments, long fileSize) throws TableFileManagerException {
+        this.segments = segments;
+        this.fileSize = fileSize;
+        if (fileSize < HEADER_SIZE || getInt(0) != MAGIC || getInt(4) != VERSION) {
+            throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+        }
+        rowCount = getInt(8);
+        columnCount = getInt(12);
+        tileRowCount = getInt(16);
+        tileCount = getLong(24);
+        formulaCount = getLong(32);
+        tileRowIndexOffset = getLong(40);
+        formulaOffset = getLong(48);
+        if (rowCount < 0 || columnCount < 0 || tileRowCount != (rowCount + TILE_ROWS - 1) >>> TILE_ROW_BITS ||
+                tileCount < 0 || tileCount > fileSize || formulaCount < 0 || formulaCount > fileSize ||
+                tileRowIndexOffset < HEADER_SIZE || tileRowIndexOffset > fileSize) {
+            throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+        }
+        tileColumnsOffset = tileRowIndexOffset + 8L * (tileRowCount + 1);
+        tileOffsetsOffset = align(tileColumnsOffset + 4L * tileCount);
+        if (tileOffsetsOffset + 8L * tileCount > formulaOffset ||
+                formulaOffset + FORMULA_HEADER_SIZE * formulaCount > fileSize) {
+            throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+        }
+        checkTiles();
+    }
+
+    private void checkTiles() throws TableFileManagerException {
+        int tileColumnCount = (columnCount + TILE_COLUMNS - 1) >>> TILE_COLUMN_BITS;
+        if (getLong(tileRowIndexOffset) != 0 || getLong(tileRowIndexOffset + 8L * tileRowCount) != tileCount) {
+            throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+        }
+        long minTileOffset = HEADER_SIZE;
+        for (int tileRow = 0; tileRow < tileRowCount; tileRow++) {
+            long tileRowStart = getLong(tileRowIndexOffset + 8L * tileRow);
+            long tileRowEnd = getLong(tileRowIndexOffset + 8L * (tileRow + 1));
+            if (tileRowEnd < tileRowStart || tileRowEnd > tileCount) {
+                throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+            }
+            int minTileColumn = 0;
+            for (long tileId = tileRowStart; tileId < tileRowEnd; tileId++) {
+                int tileColumn = getInt(tileColumnsOffset + 4 * tileId);
+                long tileOffset = getLong(tileOffsetsOffset + 8 * tileId);
+                if (tileColumn < minTileColumn || tileColumn >= tileColumnCount ||
+                        tileOffset < minTileOffset || tileOffset != align(tileOffset) ||
+                        tileOffset + TILE_HEADER_SIZE > tileRowIndexOffset) {
+                    throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+                }
+                minTileColumn = tileColumn + 1;
+                minTileOffset = tileOffset + TILE_HEADER_SIZE;
+            }
+        }
+    }
+
+    public static boolean isMappedTableFile(File file) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= HEADER_SIZE && inputStream.readInt() == MAGIC;
+        }
+    }
+
+    public static MappedTableFile open(File file) throws IOException, TableFileManagerException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int segmentId = 0; segmentId < segments.length; segmentId++) {
+                long segmentStart = (long) segmentId << SEGMENT_BITS;
+                segments[segmentId] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                        Math.min(SEGMENT_SIZE, fileSize - segmentStart));
+            }
+            return new MappedTableFile(segments, fileSize);
+        }
+    }
+
+    public static void write(Path path,
+                             int rows,
+                             int columns,
+                             CellStore.FrozenTileSet frozenTileSet,
+                             TableFileProgress tableFileProgress) throws IOException {
+        int tileRowCount = (rows + TILE_ROWS - 1) >>> TILE_ROW_BITS;
+        long[] tileRowStarts = new long[tileRowCount + 1];
+        List<Integer> tileColumns = new ArrayList<>();
+        List<Long> tileOffsets = new ArrayList<>();
+        AtomicLong formulaCount = new AtomicLong();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel formulaChannel = FileChannel.open(Path.of(path + FORMULA_FILE_EXTENSION), StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.DELETE_ON_CLOSE)) {
+            ChannelWriter channelWriter = new ChannelWriter(channel);
+            ChannelWriter formulaWriter = new ChannelWriter(formulaChannel);
+            channelWriter.pad(HEADER_SIZE);
+            try {
+                frozenTileSet.forEachTileRow(tileRowCellInfos -> {
+                    int tileRow = tileRowCellInfos.get(0).cellPosition.row >>> TILE_ROW_BITS;
+                    tableFileProgress.setProgress(tileRow, tileRowCount);
+                    int tileStartId = 0;
+                    while (tileStartId < tileRowCellInfos.size()) {
+                        CellPosition firstCellPosition = tileRowCellInfos.get(tileStartId).cellPosition;
+                        int tileEndId = tileStartId;
+                        while (tileEndId < tileRowCellInfos.size() &&
+                                isSameTile(firstCellPosition, tileRowCellInfos.get(tileEndId).cellPosition)) {
+                            tileEndId++;
+                        }
+                        tileRowStarts[tileRow + 1]++;
+                        tileColumns.add(firstCellPosition.column >>> TILE_COLUMN_BITS);
+                        tileOffsets.add(channelWriter.position);
+                        try {
+                            formulaCount.addAndGet(writeTile(channelWriter, formulaWriter,
+                                    tileRowCellInfos.subList(tileStartId, tileEndId)));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        tileStartId = tileEndId;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            long tileRowIndexOffset = channelWriter.position;
+            for (int tileRow = 0; tileRow < tileRowCount; tileRow++) {
+                tileRowStarts[tileRow + 1] += tileRowStarts[tileRow];
+            }
+            for (long tileRowStart : tileRowStarts) {
+                channelWriter.writeLong(tileRowStart);
+            }
+            for (int tileColumn : tileColumns) {
+                channelWriter.writeInt(tileColumn);
+            }
+            channelWriter.pad(align(channelWriter.position));
+            for (long tileOffset : tileOffsets) {
+                channelWriter.writeLong(tileOffset);
+            }
+            long formulaOffset = channelWriter.position;
+            channelWriter.flush();
+            formulaWriter.flush();
+            for (long formulaPosition = 0; formulaPosition < formulaWriter.position; ) {
+                formulaPosition += formulaChannel.transferTo(formulaPosition, formulaWriter.position - formulaPosition, channel);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).putInt(tileRowCount).putInt(0)
+                    .putLong(tileColumns.size()).putLong(formulaCount.get())
+                    .putLong(tileRowIndexOffset).putLong(formulaOffset);
+            header.rewind();
+            channel.write(header, 0);
+        }
+        tableFileProgress.setProgress(tileRowCount, tileRowCount);
+    }
+
+    private static int writeTile(ChannelWriter channelWriter,
+                                 ChannelWriter formulaWriter,
+                                 List<SavedCellInfo> savedCellInfos) throws IOException {
+        long cellBits = 0;
+        long valueBits = 0;
+        long errorBits = 0;
+        long formulaBits = 0;
+        int formulaCount = 0;
+        byte[][] texts = new byte[savedCellInfos.size()][];
+        byte[][] errorMessages = new byte[savedCellInfos.size()][];
+        for (int i = 0; i < savedCellInfos.size(); i++) {
+            SavedCellInfo savedCellInfo = savedCellInfos.get(i);
+            long cellBit = 1L << getCellId(savedCellInfo.cellPosition.row, savedCellInfo.cellPosition.column);
+            cellBits |= cellBit;
+            if (savedCellInfo.hasValue) {
+                valueBits |= cellBit;
+            }
+            if (savedCellInfo.errorMessage != null) {
+                errorBits |= cellBit;
+            }
+            if (savedCellInfo.isValidFormula) {
+                formulaBits |= cellBit;
+                writeFormula(formulaWriter, savedCellInfo);
+                formulaCount++;
+            }
+            texts[i] = savedCellInfo.text.getBytes(StandardCharsets.UTF_8);
+            errorMessages[i] = savedCellInfo.errorMessage == null
+                    ? new byte[0]
+                    : savedCellInfo.errorMessage.getBytes(StandardCharsets.UTF_8);
+        }
+        channelWriter.writeLong(cellBits);
+        channelWriter.writeLong(valueBits);
+        channelWriter.writeLong(errorBits);
+        channelWriter.writeLong(formulaBits);
+        int textOffset = CELL_ENTRY_SIZE * savedCellInfos.size();
+        for (int i = 0; i < savedCellInfos.size(); i++) {
+            SavedCellInfo savedCellInfo = savedCellInfos.get(i);
+            channelWriter.writeDouble(savedCellInfo.hasValue ? savedCellInfo.value : 0.0);
+            channelWriter.writeInt(textOffset - CELL_ENTRY_SIZE * i);
+            channelWriter.writeInt(texts[i].length);
+            channelWriter.writeInt(errorMessages[i].length);
+            channelWriter.writeInt(0);
+            textOffset += texts[i].length + errorMessages[i].length;
+        }
+        for (int i = 0; i < savedCellInfos.size(); i++) {
+            channelWriter.write(texts[i]);
+            channelWriter.write(errorMessages[i]);
+        }
+        channelWriter.pad(align(channelWriter.position));
+        return formulaCount;
+    }
+
+    private static void writeFormula(ChannelWriter channelWriter, SavedCellInfo savedCellInfo) throws IOException {
+        channelWriter.writeInt(savedCellInfo.cellPosition.row);
+        channelWriter.writeInt(savedCellInfo.cellPosition.column);
+        channelWriter.writeInt(savedCellInfo.isDirty ? 1 : 0);
+        channelWriter.writeInt(savedCellInfo.cellPositionsInFormula.size());
+        channelWriter.writeInt(savedCellInfo.cellDiapasonsInFormula.size());
+        for (CellPosition cellPosition : savedCellInfo.cellPositionsInFormula) {
+            channelWriter.writeInt(cellPosition.row);
+            channelWriter.writeInt(cellPosition.column);
+        }
+        for (CellDiapason cellDiapason : savedCellInfo.cellDiapasonsInFormula) {
+            channelWriter.writeInt(cellDiapason.fromCellPosition.row);
+            channelWriter.writeInt(cellDiapason.fromCellPosition.column);
+            channelWriter.writeInt(cellDiapason.toCellPosition.row);
+            channelWriter.writeInt(cellDiapason.toCellPosition.column);
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public boolean hasCell(int row, int column) {
+        return getCellEntryOffset(row, column) != NONE;
+    }
+
+    @Override
+    public String getText(int row, int column) {
+        long cellEntryOffset = getCellEntryOffset(row, column);
+        if (cellEntryOffset == NONE) {
+            return "";
+        }
+        return getString(cellEntryOffset + getInt(cellEntryOffset + 8), getInt(cellEntryOffset + 12));
+    }
+
+    @Override
+    public boolean hasValue(int row, int column) {
+        return hasTileBit(row, column, 8);
+    }
+
+    @Override
+    public double getValue(int row, int column) {
+        long cellEntryOffset = getCellEntryOffset(row, column);
+        return cellEntryOffset == NONE ? 0.0 : getDouble(cellEntryOffset);
+    }
+
+    @Override
+    public boolean hasError(int row, int column) {
+        return hasTileBit(row, column, 16);
+    }
+
+    @Override
+    public String getErrorMessage(int row, int column) {
+        long cellEntryOffset = getCellEntryOffset(row, column);
+        if (cellEntryOffset == NONE || !hasError(row, column)) {
+            return null;
+        }
+        long textOffset = cellEntryOffset + getInt(cellEntryOffset + 8);
+        return getString(textOffset + getInt(cellEntryOffset + 12), getInt(cellEntryOffset + 16));
+    }
+
+    @Override
+    public boolean isValidFormula(int row, int column) {
+        return hasTileBit(row, column, 24);
+    }
+
+    @Override
+    public void forEachCellPosition(Consumer<CellPosition> cellPositionConsumer) {
+        forEachCellEntry((cellPosition, cellEntryOffset) -> cellPositionConsumer.accept(cellPosition));
+    }
+
+    public void forEachText(BiConsumer<CellPosition, String> cellTextConsumer) {
+        forEachCellEntry((cellPosition, cellEntryOffset) -> cellTextConsumer.accept(cellPosition,
+                getString(cellEntryOffset + getInt(cellEntryOffset + 8), getInt(cellEntryOffset + 12))));
+    }
+
+    public void loadFormulaDependencies(FormulaDependencyGraph formulaDependencyGraph,
+                                        Consumer<CellPosition> dirtyFormulaConsumer) throws TableFileManagerException {
+        long position = formulaOffset;
+        for (long formulaId = 0; formulaId < formulaCount; formulaId++) {
+            if (position + FORMULA_HEADER_SIZE > fileSize) {
+                throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+            }
+            CellPosition cellPosition = new CellPosition(getInt(position), getInt(position + 4));
+            CellPosition tableCellPosition = new CellPosition(cellPosition.row, cellPosition.column + 1);
+            boolean isDirty = getInt(position + 8) != 0;
+            long cellPositionCount = getInt(position + 12);
+            long cellDiapasonCount = getInt(position + 16);
+            position += FORMULA_HEADER_SIZE;
+            if (cellPosition.row < 0 || cellPosition.row >= rowCount ||
+                    cellPosition.column < 0 || cellPosition.column >= columnCount ||
+                    cellPositionCount < 0 || cellDiapasonCount < 0 ||
+                    position + 8 * cellPositionCount + 16 * cellDiapasonCount > fileSize) {
+                throw new TableFileManagerException(TableFileReader.INVALID_FILE_MESSAGE);
+            }
+            for (long i = 0; i < cellPositionCount; i++, position += 8) {
+                formulaDependencyGraph.addEdge(new CellPosition(getInt(position), getInt(position + 4)), tableCellPosition);
+            }
+            for (long i = 0; i < cellDiapasonCount; i++, position += 16) {
+                CellDiapason cellDiapason = new CellDiapason(new CellPosition(getInt(position), getInt(position + 4)),
+                        new CellPosition(getInt(position + 8), getInt(position + 12)));
+                formulaDependencyGraph.addEdge(cellDiapason, tableCellPosition);
+            }
+            if (isDirty) {
+                dirtyFormulaConsumer.accept(cellPosition);
+            }
+        }
+    }
+
+    private void forEachCellEntry(BiConsumer<CellPosition, Long> cellEntryConsumer) {
+        for (int tileRow = 0; tileRow < tileRowCount; tileRow++) {
+            long tileRowEnd = getLong(tileRowIndexOffset + 8L * (tileRow + 1));
+            for (long tileId = getLong(tileRowIndexOffset + 8L * tileRow); tileId < tileRowEnd; tileId++) {
+                int tileColumn = getInt(tileColumnsOffset + 4 * tileId);
+                long tileOffset = getLong(tileOffsetsOffset + 8 * tileId);
+                long cellBits = getLong(tileOffset);
+                for (long bits = cellBits; bits != 0; bits &= bits - 1) {
+                    int cellId = Long.numberOfTrailingZeros(bits);
+                    int row = (tileRow << TILE_ROW_BITS) | (cellId >>> TILE_COLUMN_BITS);
+                    int column = (tileColumn << TILE_COLUMN_BITS) | (cellId & (TILE_COLUMNS - 1));
+                    if (row >= rowCount || column >= columnCount) {
+                        throw new IllegalStateException(TableFileReader.INVALID_FILE_MESSAGE);
+                    }
+                    cellEntryConsumer.accept(new CellPosition(row, column), getCellEntryOffset(tileId, cellBits, 1L << cellId));
+                }
+            }
+        }
+    }
+
+    private boolean hasTileBit(int row, int column, int bitsOffset) {
+        long tileOffset = getTileOffset(row, column);
+        return tileOffset != NONE && (getLong(tileOffset + bitsOffset) & (1L << getCellId(row, column))) != 0;
+    }
+
+    private long getCellEntryOffset(int row, int column) {
+        long tileId = getTileId(row, column);
+        if (tileId == NONE) {
+            return NONE;
+        }
+        long cellBits = getLong(getLong(tileOffsetsOffset + 8 * tileId));
+        long cellBit = 1L << getCellId(row, column);
+        if ((cellBits & cellBit) == 0) {
+            return NONE;
+        }
+        return getCellEntryOffset(tileId, cellBits, cellBit);
+    }
+
+    private long getCellEntryOffset(long tileId, long cellBits, long cellBit) {
+        long tileOffset = getLong(tileOffsetsOffset + 8 * tileId);
+        long tileEnd = tileId + 1 < tileCount ? getLong(tileOffsetsOffset + 8 * (tileId + 1)) : tileRowIndexOffset;
+        long cellEntryOffset = tileOffset + TILE_HEADER_SIZE + CELL_ENTRY_SIZE * Long.bitCount(cellBits & (cellBit - 1));
+        if (cellEntryOffset + CELL_ENTRY_SIZE > tileEnd) {
+            throw new IllegalStateException(TableFileReader.INVALID_FILE_MESSAGE);
+        }
+        long textOffset = cellEntryOffset + getInt(cellEntryOffset + 8);
+        int textLength = getInt(cellEntryOffset + 12);
+        int errorMessageLength = getInt(cellEntryOffset + 16);
+        if (textOffset < cellEntryOffset || textLength < 0 || errorMessageLength < 0 ||
+                textOffset + textLength + errorMessageLength > tileEnd) {
+            throw new IllegalStateException(TableFileReader.INVALID_FILE_MESSAGE);
+        }
+        return cellEntryOffset;
+    }
+
+    private long getTileOffset(int row, int column) {
+        long tileId = getTileId(row, column);
+        return tileId == NONE ? NONE : getLong(tileOffsetsOffset + 8 * tileId);
+    }
+
+    private long getTileId(int row, int column) {
+        int tileRow = row >>> TILE_ROW_BITS;
+        if (row < 0 || column < 0 || tileRow >= tileRowCount) {
+            return NONE;
+        }
+        int tileColumn = column >>> TILE_COLUMN_BITS;
+        long fromTileId = getLong(tileRowIndexOffset + 8L * tileRow);
+        long toTileId = getLong(tileRowIndexOffset + 8L * (tileRow + 1)) - 1;
+        while (fromTileId <= toTileId) {
+            long middleTileId = (fromTileId + toTileId) >>> 1;
+            int middleTileColumn = getInt(tileColumnsOffset + 4 * middleTileId);
+            if (middleTileColumn < tileColumn) {
+                fromTileId = middleTileId + 1;
+            } else if (middleTileColumn > tileColumn) {
+                toTileId = middleTileId - 1;
+            } else {
+                return middleTileId;
+            }
+        }
+        return NONE;
+    }
+
+    private String getString(long textOffset, int textLength) {
+        byte[] text = new byte[textLength];
+        int textId = 0;
+        while (textId < text.length) {
+            long position = textOffset + textId;
+            int segmentPosition = (int) (position & (SEGMENT_SIZE - 1));
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+            int byteCount = Math.min(text.length - textId, segment.limit() - segmentPosition);
+            segment.get(segmentPosition, text, textId, byteCount);
+            textId += byteCount;
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private double getDouble(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getDouble((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private static boolean isSameTile(CellPosition cellPosition, CellPosition otherCellPosition) {
+        return cellPosition.row >>> TILE_ROW_BITS == otherCellPosition.row >>> TILE_ROW_BITS &&
+                cellPosition.column >>> TILE_COLUMN_BITS == otherCellPosition.column >>> TILE_COLUMN_BITS;
+    }
+
+    private static int getCellId(int row, int column) {
+        return ((row & (TILE_ROWS - 1)) << TILE_COLUMN_BITS) | (column & (TILE_COLUMNS - 1));
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position = 0;
+
+        private ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void writeInt(int value) throws IOException {
+            reserve(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        private void writeLong(long value) throws IOException {
+            reserve(8);
+            buffer.putLong(value);
+            position += 8;
+        }
+
+        private void writeDouble(double value) throws IOException {
+            reserve(8);
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            int byteId = 0;
+            while (byteId < bytes.length) {
+                reserve(1);
+                int byteCount = Math.min(bytes.length - byteId, buffer.remaining());
+                buffer.put(bytes, byteId, byteCount);
+                byteId += byteCount;
+            }
+            position += bytes.length;
+        }
+
+        private void pad(long toPosition) throws IOException {
+            while (position < toPosition) {
+                reserve(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void reserve(int byteCount) throws IOException {
+            if (buffer.remaining() < byteCount) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -1,71 +1,290 @@
 package jetbrains.table;
 
 import jetbrains.exceptions.TableFileManagerException;
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellStore;
+import jetbrains.table.structures.SavedCellInfo;
 
 import java.io.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class TableFileManager {
-    private static final String INVALID_FILE_MESSAGE = "Invalid table file.";
     private static final String FILE_EXTENSION = ".table";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private static final int CELL_BATCH_SIZE = 1 << 16;
+    private static final Object SAVE_LOCK = new Object();
 
     public static void saveTableToFile(ExcelTable table, File file) throws TableFileManagerException {
-        try (Writer fileWriter = new FileWriter(file.getPath() + FILE_EXTENSION)) {
-            fileWriter.write(table.getRowCount() + "," + (table.getColumnCount() - 1) + ";");
-            for (int row = 0; row < table.getRowCount(); row++) {
-                for (int column = 0; column < table.getColumnCount() - 1; column++) {
-                    String cellText = table.getTextAt(row, column);
-                    if (cellText != null && !cellText.isEmpty()) {
-                        fileWriter.write(row + "," + column + "," + cellText.length() + ":" + cellText);
-                    }
+        saveTableToFile(table, file, TableFileProgress.getEmptyProgress());
+    }
+
+    public static void saveTableToFile(ExcelTable table,
+                                       File file,
+                                       TableFileProgress tableFileProgress) throws TableFileManagerException {
+        saveTable(table, Path.of(file.getPath() + FILE_EXTENSION), TableFileFormat.TEXT, tableFileProgress);
+    }
+
+    public static void saveTableToMappedFile(ExcelTable table, File file) throws TableFileManagerException {
+        saveTableToMappedFile(table, file, TableFileProgress.getEmptyProgress());
+    }
+
+    public static void saveTableToMappedFile(ExcelTable table,
+                                             File file,
+                                             TableFileProgress tableFileProgress) throws TableFileManagerException {
+        saveTable(table, Path.of(file.getPath() + FILE_EXTENSION), TableFileFormat.MAPPED, tableFileProgress);
+    }
+
+    public static ExcelTable getTableFromFile(File file) throws TableFileManagerException {
+        return getTableFromFile(file, TableFileProgress.getEmptyProgress());
+    }
+
+    public static ExcelTable getTableFromFile(File file, TableFileProgress tableFileProgress) throws TableFileManagerException {
+        return new ExcelTable(getTableContentFromFile(file, tableFileProgress));
+    }
+
+    public static ExcelTableContent getTableContentFromFile(File file,
+                                                            TableFileProgress tableFileProgress) throws TableFileManagerException {
+        ExcelTableContent tableContent;
+        try {
+            if (TableFileFormat.getTableFileFormat(file.toPath()) == TableFileFormat.MAPPED) {
+                tableContent = getTableContentFromMappedFile(MappedTableFile.open(file), tableFileProgress);
+            } else {
+                try (Reader fileReader = new InputStreamReader(new ProgressInputStream(
+                        new FileInputStream(file), file.length(), tableFileProgress))) {
+                    tableContent = getTableContentFromReader(fileReader);
                 }
             }
-            fileWriter.write(".");
+            TableJournal tableJournal = TableJournal.open(file.toPath());
+            try {
+                tableJournal.replay(CELL_BATCH_SIZE, cellPositionToText -> {
+                    tableFileProgress.checkCancelled();
+                    tableContent.loadTextsAt(cellPositionToText);
+                });
+            } catch (IOException | RuntimeException e) {
+                tableJournal.close();
+                throw e;
+            }
+            attachTableJournal(tableContent, tableJournal, file.toPath());
         } catch (IOException e) {
             throw new TableFileManagerException(e.getMessage());
         }
+        return tableContent;
     }
 
-    public static ExcelTable getTableFromFile(File file) throws TableFileManagerException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String tableText = reader.lines().collect(Collectors.joining("\n"));
-            Pattern tableSizePattern = Pattern.compile("(\\d+),(\\d+);");
-            Matcher tableSizeMatcher = tableSizePattern.matcher(tableText);
-            int curTextId = 0;
-            if (!tableSizeMatcher.find(curTextId)) {
-                throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+    public static ExcelTable getTableFromReader(Reader reader) throws IOException, TableFileManagerException {
+        return new ExcelTable(getTableContentFromReader(reader));
+    }
+
+    private static ExcelTableContent getTableContentFromReader(Reader reader) throws IOException, TableFileManagerException {
+        TableFileReader tableFileReader = new TableFileReader(reader);
+        int rows = tableFileReader.readNumber(',');
+        int columns = tableFileReader.readNumber(';');
+        ExcelTableContent tableContent = new ExcelTableContent(rows, columns);
+        tableFileReader.readCells(rows, columns, CELL_BATCH_SIZE, tableContent::loadTextsAt);
+        return tableContent;
+    }
+
+    public static boolean hasUnsavedChanges(ExcelTable table) {
+        TableJournal tableJournal = table.getTableJournal();
+        return tableJournal != null && tableJournal.hasUnsavedChanges();
+    }
+
+    public static void closeTableJournal(ExcelTable table) throws TableFileManagerException {
+        synchronized (SAVE_LOCK) {
+            TableJournal tableJournal = table.getTableJournal();
+            if (tableJournal == null) {
+                return;
+            }
+            table.setTableJournal(null);
+            try {
+                tableJournal.closeAndRemoveUnsavedRecords();
+            } catch (IOException e) {
+                throw new TableFileManagerException(e.getMessage());
+            }
+        }
+    }
+
+    private static ExcelTableContent getTableContentFromMappedFile(MappedTableFile tableFile,
+                                                                   TableFileProgress tableFileProgress) throws TableFileManagerException {
+        ExcelTableContent tableContent = new ExcelTableContent(tableFile);
+        List<CellPosition> dirtyFormulaCellPositions = new ArrayList<>();
+        tableFile.loadFormulaDependencies(tableContent.getFormulaDependencyGraph(), dirtyFormulaCellPositions::add);
+        Map<CellPosition, String> cellPositionToFormula = new LinkedHashMap<>();
+        for (int cellId = 0; cellId < dirtyFormulaCellPositions.size(); cellId++) {
+            CellPosition cellPosition = dirtyFormulaCellPositions.get(cellId);
+            cellPositionToFormula.put(cellPosition, tableFile.getText(cellPosition.row, cellPosition.column));
+            if (cellPositionToFormula.size() >= CELL_BATCH_SIZE) {
+                tableFileProgress.setProgress(cellId, dirtyFormulaCellPositions.size());
+                tableContent.loadTextsAt(cellPositionToFormula);
+                cellPositionToFormula.clear();
+            }
+        }
+        if (!cellPositionToFormula.isEmpty()) {
+            tableContent.loadTextsAt(cellPositionToFormula);
+        }
+        tableFileProgress.setProgress(dirtyFormulaCellPositions.size(), dirtyFormulaCellPositions.size());
+        return tableContent;
+    }
+
+    private static void saveTable(ExcelTable table,
+                                  Path path,
+                                  TableFileFormat tableFileFormat,
+                                  TableFileProgress tableFileProgress) throws TableFileManagerException {
+        synchronized (SAVE_LOCK) {
+            try {
+                TableJournal tableJournal = table.getTableJournal();
+                if (tableJournal != null) {
+                    tableJournal.commit();
+                }
+                if (tableJournal != null && isSameFile(tableJournal.getPath(), TableJournal.getJournalPath(path))) {
+                    if (Files.exists(path) && TableFileFormat.getTableFileFormat(path) == tableFileFormat) {
+                        tableJournal.markSaved();
+                        return;
+                    }
+                    saveTableSnapshot(table.getTableContent(), path, tableFileFormat, tableFileProgress);
+                    tableJournal.removeMarkedRecords(true);
+                    return;
+                }
+                TableJournal pendingTableJournal = TableJournal.create(path);
+                table.setTableJournal(pendingTableJournal);
+                try {
+                    saveTableSnapshot(table.getTableContent(), path, tableFileFormat, tableFileProgress);
+                    pendingTableJournal.removeMarkedRecords(true);
+                } catch (IOException | RuntimeException e) {
+                    table.getCalculationEngine().restoreTableJournalAndWait(pendingTableJournal, tableJournal);
+                    pendingTableJournal.closeAndDelete();
+                    throw e;
+                }
+                attachTableJournal(table.getTableContent(), pendingTableJournal, path);
+                if (tableJournal != null) {
+                    tableJournal.closeAndRemoveUnsavedRecords();
+                }
+            } catch (IOException e) {
+                throw new TableFileManagerException(e.getMessage());
             }
-            int rows = Integer.parseInt(tableSizeMatcher.group(1));
-            int columns = Integer.parseInt(tableSizeMatcher.group(2));
-            ExcelTable table = TableGenerator.getExcelTable(rows, columns);
-            curTextId += tableSizeMatcher.group().length();
+        }
+    }
 
-            Pattern cellInfoPattern = Pattern.compile("(\\d+),(\\d+),(\\d+):");
-            Matcher cellInfoMatcher = cellInfoPattern.matcher(tableText);
+    private static void saveTableSnapshot(ExcelTableContent tableContent,
+                                          Path path,
+                                          TableFileFormat tableFileFormat,
+                                          TableFileProgress tableFileProgress) throws IOException {
+        Path temporaryPath = Path.of(path + TEMPORARY_FILE_EXTENSION);
+        try {
+            tableFileFormat.write(tableContent, temporaryPath, tableFileProgress);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-            while (cellInfoMatcher.find(curTextId)) {
-                if (cellInfoMatcher.start() != curTextId) {
-                    throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+    private static void attachTableJournal(ExcelTableContent tableContent, TableJournal tableJournal, Path path) {
+        tableContent.setTableJournal(tableJournal);
+        tableJournal.setCompaction(() -> {
+            synchronized (SAVE_LOCK) {
+                if (tableContent.getTableJournal() != tableJournal) {
+                    return;
                 }
-                int row = Integer.parseInt(cellInfoMatcher.group(1));
-                int column = Integer.parseInt(cellInfoMatcher.group(2));
-                int cellTextLen = Integer.parseInt(cellInfoMatcher.group(3));
-                curTextId += cellInfoMatcher.group().length();
-                if (curTextId + cellTextLen >= tableText.length() || row >= rows || column >= columns) {
-                    throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+                try {
+                    saveTableSnapshot(tableContent, path, TableFileFormat.getTableFileFormat(path),
+                            TableFileProgress.getEmptyProgress());
+                    tableJournal.removeMarkedRecords(false);
+                } catch (IOException e) {
+                    tableJournal.setFailure(e);
                 }
-                String cellText = tableText.substring(curTextId, curTextId + cellTextLen);
-                table.setTextAt(row, column, cellText);
-                curTextId += cellTextLen;
             }
-            if (curTextId != tableText.length() - 1 || tableText.charAt(curTextId) != '.') {
-                throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+        });
+    }
+
+    private static boolean isSameFile(Path path, Path otherPath) {
+        return path.toAbsolutePath().normalize().equals(otherPath.toAbsolutePath().normalize());
+    }
+
+    private enum TableFileFormat {
+        TEXT {
+            @Override
+            public void write(ExcelTableContent tableContent, Path path, TableFileProgress tableFileProgress) throws IOException {
+                try (CellStore.FrozenTileSet frozenTileSet = tableContent.getCalculationEngine().freezeCellStoreAndWait();
+                     Writer fileWriter = new FileWriter(path.toFile())) {
+                    fileWriter.write(tableContent.getRowCount() + "," + tableContent.getColumnCount() + ";");
+                    frozenTileSet.forEachTileRow(tileRowCellInfos -> {
+                        tableFileProgress.setProgress(tileRowCellInfos.get(0).cellPosition.row, tableContent.getRowCount());
+                        tileRowCellInfos.sort(Comparator.<SavedCellInfo>comparingInt(savedCellInfo -> savedCellInfo.cellPosition.row)
+                                .thenComparingInt(savedCellInfo -> savedCellInfo.cellPosition.column));
+                        try {
+                            for (SavedCellInfo savedCellInfo : tileRowCellInfos) {
+                                CellPosition cellPosition = savedCellInfo.cellPosition;
+                                String cellText = savedCellInfo.text;
+                                fileWriter.write(cellPosition.row + "," + cellPosition.column + "," + cellText.length() + ":" + cellText);
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    fileWriter.write(".");
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                tableFileProgress.setProgress(tableContent.getRowCount(), tableContent.getRowCount());
             }
-            return table;
-        } catch (IOException e) {
-            throw new TableFileManagerException(e.getMessage());
+        },
+        MAPPED {
+            @Override
+            public void write(ExcelTableContent tableContent, Path path, TableFileProgress tableFileProgress) throws IOException {
+                try (CellStore.FrozenTileSet frozenTileSet = tableContent.getCalculationEngine().freezeCellStoreAndWait()) {
+                    MappedTableFile.write(path, tableContent.getRowCount(), tableContent.getColumnCount(), frozenTileSet,
+                            tableFileProgress);
+                }
+            }
+        };
+
+        abstract public void write(ExcelTableContent tableContent, Path path, TableFileProgress tableFileProgress) throws IOException;
+
+        public static TableFileFormat getTableFileFormat(Path path) throws IOException {
+            return Files.exists(path) && MappedTableFile.isMappedTableFile(path.toFile()) ? MAPPED : TEXT;
+        }
+    }
+
+    private static class ProgressInputStream extends FilterInputStream {
+        private final long size;
+        private final TableFileProgress tableFileProgress;
+        private long readSize = 0;
+
+        ProgressInputStream(InputStream inputStream, long size, TableFileProgress tableFileProgress) {
+            super(inputStream);
+            this.size = size;
+            this.tableFileProgress = tableFileProgress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int symbol = super.read();
+            if (symbol != -1) {
+                addReadSize(1);
+            }
+            return symbol;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int byteCount = super.read(bytes, offset, length);
+            if (byteCount > 0) {
+                addReadSize(byteCount);
+            }
+            return byteCount;
+        }
+
+        private void addReadSize(int byteCount) {
+            readSize += byteCount;
+            tableFileProgress.setProgress(readSize, size);
         }
     }
 }
@@ -0,0 +1,44 @@
+package jetbrains.table;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+
+public class TableFileProgress {
+    public static final int MAX_PROGRESS = 1000;
+    public static final String CANCELLED_MESSAGE = "Table file operation was cancelled.";
+
+    private final IntConsumer progressConsumer;
+    private volatile boolean isCancelled = false;
+    private int progress = -1;
+
+    public TableFileProgress(IntConsumer progressConsumer) {
+        this.progressConsumer = progressConsumer;
+    }
+
+    public static TableFileProgress getEmptyProgress() {
+        return new TableFileProgress(progress -> {});
+    }
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    void checkCancelled() {
+        if (isCancelled) {
+            throw new CancellationException(CANCELLED_MESSAGE);
+        }
+    }
+
+    void setProgress(long doneWork, long totalWork) {
+        checkCancelled();
+        int newProgress = totalWork <= 0 ? MAX_PROGRESS : (int) (MAX_PROGRESS * Math.min(doneWork, totalWork) / totalWork);
+        if (newProgress != progress) {
+            progress = newProgress;
+            progressConsumer.accept(newProgress);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package jetbrains.table;
+
+import jetbrains.exceptions.TableFileManagerException;
+import jetbrains.table.structures.CellPosition;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+class TableFileReader {
+    static final String INVALID_FILE_MESSAGE = "Invalid table file.";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int END_OF_FILE = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int bufferSize = 0;
+    private int bufferId = 0;
+
+    TableFileReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    int readNumber(char terminator) throws IOException, TableFileManagerException {
+        int number = 0;
+        int digitCount = 0;
+        int symbol = read();
+        while ('0' <= symbol && symbol <= '9') {
+            int digit = symbol - '0';
+            if (number > (Integer.MAX_VALUE - digit) / 10) {
+                throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+            }
+            number = 10 * number + digit;
+            digitCount++;
+            symbol = read();
+        }
+        if (digitCount == 0 || symbol != terminator) {
+            throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+        }
+        return number;
+    }
+
+    void readCells(int rows,
+                   int columns,
+                   int batchSize,
+                   Consumer<Map<CellPosition, String>> cellBatchConsumer) throws IOException, TableFileManagerException {
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        while (peek() != '.') {
+            int row = readNumber(',');
+            int column = readNumber(',');
+            int cellTextLength = readNumber(':');
+            if (row >= rows || column >= columns) {
+                throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+            }
+            cellPositionToText.put(new CellPosition(row, column), readText(cellTextLength));
+            if (cellPositionToText.size() >= batchSize) {
+                cellBatchConsumer.accept(cellPositionToText);
+                cellPositionToText = new LinkedHashMap<>();
+            }
+        }
+        read();
+        int symbol = read();
+        while (symbol == '\n' || symbol == '\r') {
+            symbol = read();
+        }
+        if (symbol != END_OF_FILE) {
+            throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+        }
+        if (!cellPositionToText.isEmpty()) {
+            cellBatchConsumer.accept(cellPositionToText);
+        }
+    }
+
+    private String readText(int length) throws IOException, TableFileManagerException {
+        StringBuilder text = new StringBuilder(Math.min(length, BUFFER_SIZE));
+        while (text.length() < length) {
+            if (bufferId == bufferSize && !fillBuffer()) {
+                throw new TableFileManagerException(INVALID_FILE_MESSAGE);
+            }
+            int symbolCount = Math.min(length - text.length(), bufferSize - bufferId);
+            text.append(buffer, bufferId, symbolCount);
+            bufferId += symbolCount;
+        }
+        return text.toString();
+    }
+
+    private int peek() throws IOException {
+        if (bufferId == bufferSize && !fillBuffer()) {
+            return END_OF_FILE;
+        }
+        return buffer[bufferId];
+    }
+
+    private int read() throws IOException {
+        int symbol = peek();
+        if (symbol != END_OF_FILE) {
+            bufferId++;
+        }
+        return symbol;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        bufferSize = reader.read(buffer, 0, BUFFER_SIZE);
+        bufferId = 0;
+        if (bufferSize <= 0) {
+            bufferSize = 0;
+            return false;
+        }
+        return true;
+    }
+}
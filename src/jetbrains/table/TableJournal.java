@@ -0,0 +1,320 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellPosition;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+public class TableJournal implements Closeable {
+    public static final String FILE_EXTENSION = ".journal";
+    public static final int GROUP_COMMIT_MILLIS = 100;
+    public static final long COMPACTION_SIZE = 16L << 20;
+
+    private static final String THREAD_NAME = "table-journal";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private static final String PENDING_FILE_EXTENSION = ".pending";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int CELL_HEADER_SIZE = 8;
+    private static final CellPosition SAVED_MARKER_CELL_POSITION = new CellPosition(-1, -1);
+
+    private final Path path;
+    private final ScheduledExecutorService executor;
+    private Path channelPath;
+    private FileChannel channel;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private long committedSize;
+    private long markedSize = 0;
+    private long savedSize = 0;
+    private boolean hasCompactedUnsavedChanges = false;
+    private long compactionSize = COMPACTION_SIZE;
+    private Runnable compaction;
+    private boolean isCompacting = false;
+    private IOException failure;
+
+    private TableJournal(Path path, Path channelPath, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channelPath = channelPath;
+        this.channel = channel;
+        this.committedSize = channel.size();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::commitAndCompact, GROUP_COMMIT_MILLIS, GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static Path getJournalPath(Path tablePath) {
+        return Path.of(tablePath + FILE_EXTENSION);
+    }
+
+    public static TableJournal open(Path tablePath) throws IOException {
+        Path path = getJournalPath(tablePath);
+        return new TableJournal(path, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    public static TableJournal create(Path tablePath) throws IOException {
+        Path path = getJournalPath(tablePath);
+        Path pendingPath = Path.of(path + PENDING_FILE_EXTENSION);
+        return new TableJournal(path, pendingPath, FileChannel.open(pendingPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized void replay(int batchSize, Consumer<Map<CellPosition, String>> cellBatchConsumer) throws IOException {
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        long validSize = 0;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(channelPath), 1 << 16))) {
+            while (validSize + RECORD_HEADER_SIZE <= committedSize) {
+                int recordSize = inputStream.readInt();
+                int recordChecksum = inputStream.readInt();
+                if (recordSize < CELL_HEADER_SIZE || validSize + RECORD_HEADER_SIZE + recordSize > committedSize) {
+                    break;
+                }
+                byte[] record = inputStream.readNBytes(recordSize);
+                if (getChecksum(record) != recordChecksum) {
+                    break;
+                }
+                validSize += RECORD_HEADER_SIZE + recordSize;
+                ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+                CellPosition cellPosition = new CellPosition(recordBuffer.getInt(), recordBuffer.getInt());
+                if (cellPosition.equals(SAVED_MARKER_CELL_POSITION)) {
+                    savedSize = validSize;
+                    continue;
+                }
+                cellPositionToText.put(cellPosition,
+                        new String(record, CELL_HEADER_SIZE, recordSize - CELL_HEADER_SIZE, StandardCharsets.UTF_8));
+                if (cellPositionToText.size() >= batchSize) {
+                    cellBatchConsumer.accept(cellPositionToText);
+                    cellPositionToText = new LinkedHashMap<>();
+                }
+            }
+        }
+        if (!cellPositionToText.isEmpty()) {
+            cellBatchConsumer.accept(cellPositionToText);
+        }
+        if (validSize < committedSize) {
+            channel.truncate(validSize);
+            channel.force(false);
+            committedSize = validSize;
+        }
+    }
+
+    public synchronized void append(Map<CellPosition, String> cellPositionToText) {
+        cellPositionToText.forEach((cellPosition, text) -> buffer.writeBytes(getRecord(cellPosition, text)));
+    }
+
+    public synchronized long getSize() {
+        return committedSize + buffer.size();
+    }
+
+    public synchronized void mark() {
+        markedSize = getSize();
+    }
+
+    public synchronized void markSaved() throws IOException {
+        commit();
+        if (committedSize > savedSize) {
+            buffer.writeBytes(getRecord(SAVED_MARKER_CELL_POSITION, ""));
+            writeBuffer();
+        }
+        savedSize = committedSize;
+        hasCompactedUnsavedChanges = false;
+    }
+
+    public synchronized boolean hasUnsavedChanges() {
+        return hasCompactedUnsavedChanges || getSize() > savedSize;
+    }
+
+    public synchronized void commit() throws IOException {
+        if (failure != null) {
+            IOException storedFailure = failure;
+            failure = null;
+            throw storedFailure;
+        }
+        writeBuffer();
+    }
+
+    synchronized void setFailure(IOException failure) {
+        this.failure = failure;
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.wrap(buffer.toByteArray());
+        channel.position(committedSize);
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        channel.force(false);
+        committedSize += records.capacity();
+        buffer.reset();
+    }
+
+    public void removeMarkedRecords(boolean areMarkedRecordsSaved) throws IOException {
+        long removedSize;
+        long copiedSize;
+        FileChannel copiedChannel;
+        synchronized (this) {
+            commit();
+            removedSize = markedSize;
+            copiedSize = committedSize;
+            copiedChannel = channel;
+        }
+        Path temporaryPath = Path.of(path + TEMPORARY_FILE_EXTENSION);
+        try (FileChannel temporaryChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            transferRecords(copiedChannel, removedSize, copiedSize, temporaryChannel);
+            temporaryChannel.force(false);
+            synchronized (this) {
+                writeBuffer();
+                transferRecords(channel, copiedSize, committedSize, temporaryChannel);
+                temporaryChannel.force(false);
+                channel.close();
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (!channelPath.equals(path)) {
+                    Files.deleteIfExists(channelPath);
+                    channelPath = path;
+                }
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (areMarkedRecordsSaved) {
+                    hasCompactedUnsavedChanges = false;
+                } else if (removedSize > savedSize) {
+                    hasCompactedUnsavedChanges = true;
+                }
+                committedSize -= removedSize;
+                savedSize = Math.max(0, savedSize - removedSize);
+                markedSize = Math.max(0, markedSize - removedSize);
+                compactionSize = Math.max(COMPACTION_SIZE, 2 * committedSize);
+            }
+        }
+    }
+
+    public synchronized void setCompaction(Runnable compaction) {
+        this.compaction = compaction;
+    }
+
+    public void compact() {
+        Runnable compactionToRun;
+        synchronized (this) {
+            compactionToRun = compaction;
+        }
+        if (compactionToRun != null) {
+            compactionToRun.run();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                commit();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public void closeAndRemoveUnsavedRecords() throws IOException {
+        close();
+        synchronized (this) {
+            if (savedSize == 0) {
+                Files.deleteIfExists(channelPath);
+                return;
+            }
+            try (FileChannel savedChannel = FileChannel.open(channelPath, StandardOpenOption.WRITE)) {
+                savedChannel.truncate(savedSize);
+                savedChannel.force(false);
+            }
+        }
+    }
+
+    public void closeAndDelete() throws IOException {
+        try {
+            close();
+        } finally {
+            Files.deleteIfExists(channelPath);
+        }
+    }
+
+    private void commitAndCompact() {
+        Runnable compactionToRun;
+        synchronized (this) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            if (compaction == null || isCompacting || committedSize < compactionSize) {
+                return;
+            }
+            isCompacting = true;
+            compactionToRun = compaction;
+        }
+        Thread compactionThread = new Thread(() -> {
+            try {
+                compactionToRun.run();
+            } finally {
+                synchronized (this) {
+                    isCompacting = false;
+                }
+            }
+        }, THREAD_NAME + "-compaction");
+        compactionThread.setDaemon(true);
+        compactionThread.start();
+    }
+
+    private static void transferRecords(FileChannel fromChannel,
+                                        long fromPosition,
+                                        long toPosition,
+                                        FileChannel toChannel) throws IOException {
+        long position = fromPosition;
+        while (position < toPosition) {
+            position += fromChannel.transferTo(position, toPosition - position, toChannel);
+        }
+    }
+
+    private static byte[] getRecord(CellPosition cellPosition, String text) {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + CELL_HEADER_SIZE + textBytes.length);
+        record.position(RECORD_HEADER_SIZE);
+        record.putInt(cellPosition.row).putInt(cellPosition.column).put(textBytes);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), RECORD_HEADER_SIZE, CELL_HEADER_SIZE + textBytes.length);
+        record.putInt(0, CELL_HEADER_SIZE + textBytes.length).putInt(4, (int) checksum.getValue());
+        return record.array();
+    }
+
+    private static int getChecksum(byte[] bytes) {
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        return (int) checksum.getValue();
+    }
+}
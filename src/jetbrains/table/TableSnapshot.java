@@ -0,0 +1,18 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellStore;
+
+import java.util.List;
+
+public class TableSnapshot {
+    public final CellStore.FrozenTileSet frozenTileSet;
+    public final List<CellPosition> updatedCellPositions;
+    public final long version;
+
+    public TableSnapshot(CellStore.FrozenTileSet frozenTileSet, List<CellPosition> updatedCellPositions, long version) {
+        this.frozenTileSet = frozenTileSet;
+        this.updatedCellPositions = updatedCellPositions;
+        this.version = version;
+    }
+}
@@ -23,5 +23,9 @@ public class CellDiapason {
         CellDiapason diapason = (CellDiapason) o;
         return Objects.equals(fromCellPosition, diapason.fromCellPosition) && Objects.equals(toCellPosition, diapason.toCellPosition);
     }
-}
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromCellPosition, toCellPosition);
+    }
+}
@@ -3,94 +3,208 @@ package jetbrains.table.structures;
 import jetbrains.exceptions.FormulaCalculatorException;
 import jetbrains.exceptions.FunctionParameterException;
 import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.calculator.DoubleEvaluator;
+import jetbrains.formulas.calculator.TieredDoubleEvaluator;
+import jetbrains.formulas.parser.CellTextType;
 import jetbrains.formulas.parser.FormulaParser;
 import jetbrains.formulas.parser.nodes.TreeNode;
-import jetbrains.table.ExcelTable;
+import jetbrains.table.ExcelTableContent;
 
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Objects;
 import java.util.Set;
-import java.util.function.BiFunction;
 
 public class CellElement {
-    ExcelTable table;
+    private static final CellPosition[] NO_CELL_POSITIONS = new CellPosition[0];
+
+    ExcelTableContent tableContent;
     public CellPosition cellPosition;
     public String text;
     TreeNode treeNode;
-    Double formulaValue;
-    String errorMessage;
+    DoubleEvaluator formulaEvaluator;
+    double evaluatedValue;
+    String evaluationErrorMessage;
+    boolean isFormulaParsed = true;
+    CellPosition[] cellPositionsInFormula = NO_CELL_POSITIONS;
+    boolean hasCellDiapasonsInFormula = false;
 
-    public CellElement(CellPosition cellPosition, String text, ExcelTable table) {
+    public CellElement(CellPosition cellPosition, String text, ExcelTableContent tableContent) {
         this.cellPosition = cellPosition;
-        this.table = table;
-        updateText(text, false);
+        this.tableContent = tableContent;
+        if (CellTextType.getCellTextType(text) == CellTextType.EMPTY) {
+            this.text = text;
+        } else {
+            loadText(text);
+        }
     }
 
-    public void updateText(String text,
-                           boolean isSaveToBackUp) {
-        if (isSaveToBackUp && !Objects.equals(this.text, text)) {
-            table.getUpdateActionsToBackUp().add(new UpdateAction(cellPosition, this.text));
+    public void loadText(String text) {
+        this.text = text;
+        isFormulaParsed = true;
+        tableContent.getCellStore().setDirty(cellPosition.row, cellPosition.column - 1, false);
+        treeNode = null;
+        formulaEvaluator = null;
+        cellPositionsInFormula = NO_CELL_POSITIONS;
+        hasCellDiapasonsInFormula = false;
+        setErrorMessage(null);
+        switch (CellTextType.getCellTextType(text)) {
+            case NUMBER -> setFormulaValue(CellTextType.getNumberValue(text));
+            case FORMULA -> {
+                clearFormulaValue();
+                parseFormula();
+            }
+            case default -> clearFormulaValue();
         }
+    }
+
+    void loadSavedText(String text, boolean isValidFormula) {
         this.text = text;
-        formulaValue = null;
-        errorMessage = null;
-        table.getFormulaDependencyGraph().removeIncomingEdges(cellPosition);
+        isFormulaParsed = !isValidFormula;
+    }
+
+    private void parseSavedFormula() {
+        if (isFormulaParsed) {
+            return;
+        }
+        isFormulaParsed = true;
         try {
             treeNode = FormulaParser.parse(text);
+            formulaEvaluator = new TieredDoubleEvaluator(treeNode);
             Set<CellPosition> cellPositionsInFormula = new HashSet<>();
             treeNode.addAllCellPositions(cellPositionsInFormula);
-            cellPositionsInFormula
-                    .forEach(fromCellPosition -> table.getFormulaDependencyGraph().addEdge(fromCellPosition, cellPosition));
+            Set<CellDiapason> cellDiapasonsInFormula = new HashSet<>();
+            treeNode.addAllCellDiapasons(cellDiapasonsInFormula);
+            setCellReferencesInFormula(cellPositionsInFormula, cellDiapasonsInFormula);
         } catch (ParserException e) {
-            errorMessage = e.getMessage();
+            setErrorMessage(e.getMessage());
         }
+    }
 
+    private void parseFormula() {
         try {
-            List<CellPosition> calculateOrder = table.getFormulaDependencyGraph().getCalculateOrder(cellPosition);
-            if (errorMessage != null) {
-                calculateOrder = calculateOrder.subList(1, calculateOrder.size());
-            }
-            calculateOrder.forEach(cell -> table.getCellElement(cell.row, cell.column - 1).recalculateFormulaValue());
-        } catch (FormulaCalculatorException e) {
-            errorMessage = e.getMessage();
+            treeNode = FormulaParser.parse(text);
+            formulaEvaluator = new TieredDoubleEvaluator(treeNode);
+            Set<CellPosition> cellPositionsInFormula = new HashSet<>();
+            treeNode.addAllCellPositions(cellPositionsInFormula);
+            cellPositionsInFormula
+                    .forEach(fromCellPosition -> tableContent.getFormulaDependencyGraph().addEdge(fromCellPosition, cellPosition));
+            Set<CellDiapason> cellDiapasonsInFormula = new HashSet<>();
+            treeNode.addAllCellDiapasons(cellDiapasonsInFormula);
+            cellDiapasonsInFormula
+                    .forEach(fromCellDiapason -> tableContent.getFormulaDependencyGraph().addEdge(fromCellDiapason, cellPosition));
+            setCellReferencesInFormula(cellPositionsInFormula, cellDiapasonsInFormula);
+        } catch (ParserException e) {
+            setErrorMessage(e.getMessage());
         }
-        table.setValueAt(getTextToCell(), cellPosition.row, cellPosition.column);
-        table.updateTextFieldToSynchronize(getTextToSyncTextField());
     }
 
-    public void recalculateFormulaValue() {
-        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> table.getCellElement(row, column - 1).getValue();
+    private void setCellReferencesInFormula(Set<CellPosition> cellPositionsInFormula,
+                                            Set<CellDiapason> cellDiapasonsInFormula) {
+        this.cellPositionsInFormula = cellPositionsInFormula.isEmpty()
+                ? NO_CELL_POSITIONS
+                : cellPositionsInFormula.toArray(new CellPosition[0]);
+        this.hasCellDiapasonsInFormula = !cellDiapasonsInFormula.isEmpty();
+    }
+
+    public void calculateFormulaValue() {
+        evaluateFormulaValue();
+        applyFormulaValue();
+    }
+
+    public void evaluateFormulaValue() {
+        parseSavedFormula();
         try {
-            formulaValue = (Double) treeNode.calculate(tableValuesFunction);
+            evaluatedValue = formulaEvaluator.eval(tableContent.getValueSource());
+            evaluationErrorMessage = null;
         } catch (FunctionParameterException | FormulaCalculatorException e) {
-            errorMessage = e.getMessage();
+            evaluationErrorMessage = e.getMessage();
+        }
+    }
+
+    public void applyFormulaValue() {
+        if (evaluationErrorMessage == null) {
+            setFormulaValue(evaluatedValue);
+        } else {
+            setErrorMessage(evaluationErrorMessage);
+        }
+    }
+
+    private void setFormulaValue(double formulaValue) {
+        double oldValue = getValue();
+        tableContent.getCellStore().setValue(cellPosition.row, cellPosition.column - 1, formulaValue);
+        onFormulaValueChanged(oldValue);
+    }
+
+    private void clearFormulaValue() {
+        double oldValue = getValue();
+        tableContent.getCellStore().clearValue(cellPosition.row, cellPosition.column - 1);
+        onFormulaValueChanged(oldValue);
+    }
+
+    private void onFormulaValueChanged(double oldValue) {
+        double newValue = getValue();
+        if (Double.compare(oldValue, newValue) != 0) {
+            tableContent.onCellValueChanged(cellPosition, oldValue, newValue);
         }
-        table.setValueAt(getTextToCell(), cellPosition.row, cellPosition.column);
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        tableContent.getCellStore().setErrorMessage(cellPosition.row, cellPosition.column - 1, errorMessage);
+    }
+
+    private String getErrorMessage() {
+        return tableContent.getCellStore().getErrorMessage(cellPosition.row, cellPosition.column - 1);
     }
 
     public double getValue() {
-        return formulaValue == null ? 0.0 : formulaValue;
+        return tableContent.getCellStore().getValue(cellPosition.row, cellPosition.column - 1);
+    }
+
+    public void addAllCellPositionsInFormula(Set<CellPosition> cellPositions) {
+        parseSavedFormula();
+        Collections.addAll(cellPositions, cellPositionsInFormula);
+    }
+
+    public void addAllCellDiapasonsInFormula(Set<CellDiapason> cellDiapasons) {
+        parseSavedFormula();
+        if (treeNode != null) {
+            treeNode.addAllCellDiapasons(cellDiapasons);
+        }
+    }
+
+    public boolean hasCellDiapasonsInFormula() {
+        parseSavedFormula();
+        return hasCellDiapasonsInFormula;
+    }
+
+    public boolean hasDirtyCellPositionsInFormula() {
+        parseSavedFormula();
+        for (CellPosition fromCellPosition : cellPositionsInFormula) {
+            if (tableContent.getCellStore().isDirty(fromCellPosition.row, fromCellPosition.column - 1)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean isValidFormula() {
-        return treeNode != null;
+        return treeNode != null || !isFormulaParsed;
     }
 
     public boolean isInvalidFormula() {
-        return text.trim().startsWith("=") && errorMessage != null;
+        return text.trim().startsWith("=") && getErrorMessage() != null;
     }
 
     public String getTextToCell() {
-        if (formulaValue != null) {
-            return formulaValue + "";
+        if (tableContent.getCellStore().hasValue(cellPosition.row, cellPosition.column - 1)) {
+            return getValue() + "";
         }
         return getTextToSyncTextField();
     }
 
     public String getTextToSyncTextField() {
         if (isInvalidFormula()) {
-            return errorMessage;
+            return getErrorMessage();
         }
         return text;
     }
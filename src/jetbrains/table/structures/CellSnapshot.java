@@ -0,0 +1,31 @@
+package jetbrains.table.structures;
+
+public class CellSnapshot {
+    public final CellPosition cellPosition;
+    public final String text;
+    public final String textToCell;
+    public final String textToSyncTextField;
+    public final boolean isValidFormula;
+    public final boolean isDirty;
+    public final long version;
+
+    public CellSnapshot(CellPosition cellPosition,
+                        String text,
+                        String textToCell,
+                        String textToSyncTextField,
+                        boolean isValidFormula,
+                        boolean isDirty,
+                        long version) {
+        this.cellPosition = cellPosition;
+        this.text = text;
+        this.textToCell = textToCell;
+        this.textToSyncTextField = textToSyncTextField;
+        this.isValidFormula = isValidFormula;
+        this.isDirty = isDirty;
+        this.version = version;
+    }
+
+    public static CellSnapshot getEmptySnapshot(CellPosition cellPosition) {
+        return new CellSnapshot(cellPosition, "", "", "", false, false, 0);
+    }
+}
@@ -0,0 +1,28 @@
+package jetbrains.table.structures;
+
+import java.util.function.Consumer;
+
+public interface CellSource {
+    boolean hasCell(int row, int column);
+
+    String getText(int row, int column);
+
+    boolean hasValue(int row, int column);
+
+    double getValue(int row, int column);
+
+    boolean hasError(int row, int column);
+
+    String getErrorMessage(int row, int column);
+
+    boolean isValidFormula(int row, int column);
+
+    void forEachCellPosition(Consumer<CellPosition> cellPositionConsumer);
+
+    default String getTextToCell(int row, int column) {
+        if (hasValue(row, column)) {
+            return getValue(row, column) + "";
+        }
+        return hasError(row, column) ? getErrorMessage(row, column) : getText(row, column);
+    }
+}
@@ -0,0 +1,600 @@
+package jetbrains.table.structures;
+
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.parser.CellTextType;
+import jetbrains.formulas.parser.FormulaParser;
+import jetbrains.formulas.parser.nodes.TreeNode;
+import jetbrains.table.ExcelTableContent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class CellStore {
+    private static final int TILE_ROW_BITS = 4;
+    private static final int TILE_COLUMN_BITS = 2;
+    private static final int TILE_ROWS = 1 << TILE_ROW_BITS;
+    private static final int TILE_COLUMNS = 1 << TILE_COLUMN_BITS;
+    private static final int TILE_SIZE = TILE_ROWS * TILE_COLUMNS;
+    private static final TileRow[] NO_TILE_ROWS = new TileRow[0];
+
+    private final CellSource cellSource;
+    private final ExcelTableContent tableContent;
+    private final AtomicInteger frozenTileSetCount = new AtomicInteger();
+    private TileRow[] tileRows = NO_TILE_ROWS;
+    private int version = 0;
+    private int size = 0;
+    private int tileCount = 0;
+    private int dirtyCount = 0;
+
+    public CellStore() {
+        this(null, null);
+    }
+
+    public CellStore(CellSource cellSource, ExcelTableContent tableContent) {
+        this.cellSource = cellSource;
+        this.tableContent = tableContent;
+    }
+
+    public CellElement get(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null && cellSource != null && cellSource.hasCell(row, column)) {
+            tile = getOrCreateTile(row, column);
+        }
+        return tile == null ? null : tile.cells[getCellId(row, column)];
+    }
+
+    public void put(int row, int column, CellElement cell) {
+        Tile tile = getOrCreateTile(row, column);
+        int cellId = getCellId(row, column);
+        if (tile.cells[cellId] == null) {
+            tile.size++;
+            size++;
+        }
+        tile.cells[cellId] = cell;
+    }
+
+    public void remove(int row, int column) {
+        if (get(row, column) == null) {
+            return;
+        }
+        Tile tile = getWritableTile(row, column);
+        int cellId = getCellId(row, column);
+        tile.cells[cellId] = null;
+        tile.values[cellId] = 0.0;
+        tile.errorMessages[cellId] = null;
+        tile.valueBits &= ~(1L << cellId);
+        tile.errorBits &= ~(1L << cellId);
+        if ((tile.dirtyBits & (1L << cellId)) != 0) {
+            tile.dirtyBits &= ~(1L << cellId);
+            dirtyCount--;
+        }
+        size--;
+        if (--tile.size == 0 && !tile.isFromCellSource) {
+            getWritableTileRow(row >>> TILE_ROW_BITS).tiles[column >>> TILE_COLUMN_BITS] = null;
+            tileCount--;
+        }
+    }
+
+    public double getValue(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null) {
+            return cellSource == null ? 0.0 : cellSource.getValue(row, column);
+        }
+        return tile.values[getCellId(row, column)];
+    }
+
+    public boolean hasValue(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null) {
+            return cellSource != null && cellSource.hasValue(row, column);
+        }
+        return (tile.valueBits & (1L << getCellId(row, column))) != 0;
+    }
+
+    public void setValue(int row, int column, double value) {
+        Tile tile = getOrCreateTile(row, column);
+        int cellId = getCellId(row, column);
+        tile.values[cellId] = value;
+        tile.valueBits |= 1L << cellId;
+    }
+
+    public void clearValue(int row, int column) {
+        Tile tile = getWritableTile(row, column);
+        if (tile != null) {
+            int cellId = getCellId(row, column);
+            tile.values[cellId] = 0.0;
+            tile.valueBits &= ~(1L << cellId);
+        }
+    }
+
+    public boolean hasError(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null) {
+            return cellSource != null && cellSource.hasError(row, column);
+        }
+        return (tile.errorBits & (1L << getCellId(row, column))) != 0;
+    }
+
+    public String getErrorMessage(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null) {
+            return cellSource == null ? null : cellSource.getErrorMessage(row, column);
+        }
+        return tile.errorMessages[getCellId(row, column)];
+    }
+
+    public void setErrorMessage(int row, int column, String errorMessage) {
+        Tile tile = errorMessage != null ? getOrCreateTile(row, column) : getWritableTile(row, column);
+        if (tile == null) {
+            return;
+        }
+        int cellId = getCellId(row, column);
+        tile.errorMessages[cellId] = errorMessage;
+        if (errorMessage != null) {
+            tile.errorBits |= 1L << cellId;
+        } else {
+            tile.errorBits &= ~(1L << cellId);
+        }
+    }
+
+    public boolean isDirty(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        return tile != null && (tile.dirtyBits & (1L << getCellId(row, column))) != 0;
+    }
+
+    public void setDirty(int row, int column, boolean isDirty) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null || tile.cells[getCellId(row, column)] == null) {
+            return;
+        }
+        long cellBit = 1L << getCellId(row, column);
+        if (isDirty == ((tile.dirtyBits & cellBit) != 0)) {
+            return;
+        }
+        tile = getWritableTile(row, column);
+        if (isDirty) {
+            tile.dirtyBits |= cellBit;
+            dirtyCount++;
+        } else {
+            tile.dirtyBits &= ~cellBit;
+            dirtyCount--;
+        }
+    }
+
+    public int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    public void forEachDirty(Consumer<CellElement> cellConsumer) {
+        if (dirtyCount == 0) {
+            return;
+        }
+        for (TileRow tileRow : tileRows) {
+            if (tileRow == null) {
+                continue;
+            }
+            for (Tile tile : tileRow.tiles) {
+                if (tile != null) {
+                    forEachDirty(tile, tile.dirtyBits, cellConsumer);
+                }
+            }
+        }
+    }
+
+    public void forEachDirty(int fromRow, int fromColumn, int toRow, int toColumn, Consumer<CellElement> cellConsumer) {
+        if (dirtyCount == 0) {
+            return;
+        }
+        int toTileRow = Math.min(toRow >>> TILE_ROW_BITS, tileRows.length - 1);
+        for (int tileRowId = fromRow >>> TILE_ROW_BITS; tileRowId <= toTileRow; tileRowId++) {
+            TileRow tileRow = tileRows[tileRowId];
+            if (tileRow == null) {
+                continue;
+            }
+            int toTileColumn = Math.min(toColumn >>> TILE_COLUMN_BITS, tileRow.tiles.length - 1);
+            for (int tileColumn = fromColumn >>> TILE_COLUMN_BITS; tileColumn <= toTileColumn; tileColumn++) {
+                Tile tile = tileRow.tiles[tileColumn];
+                if (tile != null && tile.dirtyBits != 0) {
+                    forEachDirty(tile, getDirtyBitsInside(tile, fromRow, fromColumn, toRow, toColumn), cellConsumer);
+                }
+            }
+        }
+    }
+
+    public void forEach(Consumer<CellElement> cellConsumer) {
+        for (TileRow tileRow : tileRows) {
+            if (tileRow == null) {
+                continue;
+            }
+            for (Tile tile : tileRow.tiles) {
+                if (tile == null) {
+                    continue;
+                }
+                for (CellElement cell : tile.cells) {
+                    if (cell != null) {
+                        cellConsumer.accept(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    public FrozenTileSet freeze() {
+        version++;
+        frozenTileSetCount.incrementAndGet();
+        return new FrozenTileSet(tileRows.clone(), dirtyCount);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    private Tile getWritableTile(int row, int column) {
+        Tile tile = getTile(tileRows, row, column);
+        if (tile == null || tile.version == version) {
+            return tile;
+        }
+        if (frozenTileSetCount.get() > 0) {
+            tile = new Tile(tile, version);
+            getWritableTileRow(row >>> TILE_ROW_BITS).tiles[column >>> TILE_COLUMN_BITS] = tile;
+        } else {
+            tile.version = version;
+        }
+        return tile;
+    }
+
+    private TileRow getWritableTileRow(int tileRowId) {
+        TileRow tileRow = tileRows[tileRowId];
+        if (tileRow.version == version) {
+            return tileRow;
+        }
+        if (frozenTileSetCount.get() > 0) {
+            tileRow = new TileRow(tileRow.tiles.clone(), version);
+            tileRows[tileRowId] = tileRow;
+        } else {
+            tileRow.version = version;
+        }
+        return tileRow;
+    }
+
+    private Tile getOrCreateTile(int row, int column) {
+        Tile tile = getWritableTile(row, column);
+        if (tile != null) {
+            return tile;
+        }
+        int tileRowId = row >>> TILE_ROW_BITS;
+        int tileColumn = column >>> TILE_COLUMN_BITS;
+        if (tileRowId >= tileRows.length) {
+            tileRows = Arrays.copyOf(tileRows, Math.max(tileRowId + 1, 2 * tileRows.length));
+        }
+        if (tileRows[tileRowId] == null) {
+            tileRows[tileRowId] = new TileRow(new Tile[tileColumn + 1], version);
+        }
+        TileRow tileRow = getWritableTileRow(tileRowId);
+        if (tileColumn >= tileRow.tiles.length) {
+            tileRow.tiles = Arrays.copyOf(tileRow.tiles, Math.max(tileColumn + 1, 2 * tileRow.tiles.length));
+        }
+        tile = new Tile(tileRowId, tileColumn, version);
+        tileRow.tiles[tileColumn] = tile;
+        tileCount++;
+        if (cellSource != null) {
+            loadTile(tile);
+        }
+        return tile;
+    }
+
+    private void loadTile(Tile tile) {
+        for (int cellId = 0; cellId < TILE_SIZE; cellId++) {
+            int row = (tile.tileRow << TILE_ROW_BITS) | (cellId >>> TILE_COLUMN_BITS);
+            int column = (tile.tileColumn << TILE_COLUMN_BITS) | (cellId & (TILE_COLUMNS - 1));
+            if (!cellSource.hasCell(row, column)) {
+                continue;
+            }
+            CellElement cell = new CellElement(new CellPosition(row, column + 1), "", tableContent);
+            cell.loadSavedText(cellSource.getText(row, column), cellSource.isValidFormula(row, column));
+            tile.cells[cellId] = cell;
+            tile.size++;
+            size++;
+            if (cellSource.hasValue(row, column)) {
+                tile.values[cellId] = cellSource.getValue(row, column);
+                tile.valueBits |= 1L << cellId;
+            }
+            if (cellSource.hasError(row, column)) {
+                tile.errorMessages[cellId] = cellSource.getErrorMessage(row, column);
+                tile.errorBits |= 1L << cellId;
+            }
+            tile.isFromCellSource = true;
+        }
+    }
+
+    private static Tile getTile(TileRow[] tileRows, int row, int column) {
+        int tileRowId = row >>> TILE_ROW_BITS;
+        if (tileRowId >= tileRows.length || tileRows[tileRowId] == null) {
+            return null;
+        }
+        Tile[] tiles = tileRows[tileRowId].tiles;
+        int tileColumn = column >>> TILE_COLUMN_BITS;
+        return tileColumn < tiles.length ? tiles[tileColumn] : null;
+    }
+
+    private static long getDirtyBitsInside(Tile tile, int fromRow, int fromColumn, int toRow, int toColumn) {
+        int tileFromRow = tile.tileRow << TILE_ROW_BITS;
+        int tileFromColumn = tile.tileColumn << TILE_COLUMN_BITS;
+        if (fromRow <= tileFromRow && tileFromRow + TILE_ROWS - 1 <= toRow &&
+                fromColumn <= tileFromColumn && tileFromColumn + TILE_COLUMNS - 1 <= toColumn) {
+            return tile.dirtyBits;
+        }
+        long dirtyBits = 0;
+        for (long bits = tile.dirtyBits; bits != 0; bits &= bits - 1) {
+            int cellId = Long.numberOfTrailingZeros(bits);
+            int row = tileFromRow | (cellId >>> TILE_COLUMN_BITS);
+            int column = tileFromColumn | (cellId & (TILE_COLUMNS - 1));
+            if (fromRow <= row && row <= toRow && fromColumn <= column && column <= toColumn) {
+                dirtyBits |= 1L << cellId;
+            }
+        }
+        return dirtyBits;
+    }
+
+    private static void forEachDirty(Tile tile, long dirtyBits, Consumer<CellElement> cellConsumer) {
+        for (long bits = dirtyBits; bits != 0; bits &= bits - 1) {
+            cellConsumer.accept(tile.cells[Long.numberOfTrailingZeros(bits)]);
+        }
+    }
+
+    private static TreeNode parseFormula(String text) {
+        if (CellTextType.getCellTextType(text) != CellTextType.FORMULA) {
+            return null;
+        }
+        try {
+            return FormulaParser.parse(text);
+        } catch (ParserException e) {
+            return null;
+        }
+    }
+
+    private static long getTileKey(int row, int column) {
+        return ((long) (row >>> TILE_ROW_BITS) << 32) | (column >>> TILE_COLUMN_BITS);
+    }
+
+    private static long getTileKey(Tile tile) {
+        return ((long) tile.tileRow << 32) | tile.tileColumn;
+    }
+
+    private static int getCellId(int row, int column) {
+        return ((row & (TILE_ROWS - 1)) << TILE_COLUMN_BITS) | (column & (TILE_COLUMNS - 1));
+    }
+
+    public class FrozenTileSet implements CellSource, AutoCloseable {
+        private final TileRow[] frozenTileRows;
+        private final int frozenDirtyCount;
+        private boolean isClosed = false;
+
+        private FrozenTileSet(TileRow[] frozenTileRows, int frozenDirtyCount) {
+            this.frozenTileRows = frozenTileRows;
+            this.frozenDirtyCount = frozenDirtyCount;
+        }
+
+        @Override
+        public boolean hasCell(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            if (tile == null) {
+                return cellSource != null && cellSource.hasCell(row, column);
+            }
+            return tile.cells[getCellId(row, column)] != null;
+        }
+
+        @Override
+        public String getText(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            if (tile == null) {
+                return cellSource == null ? "" : cellSource.getText(row, column);
+            }
+            CellElement cell = tile.cells[getCellId(row, column)];
+            return cell == null ? "" : cell.text;
+        }
+
+        @Override
+        public boolean hasValue(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            if (tile == null) {
+                return cellSource != null && cellSource.hasValue(row, column);
+            }
+            return (tile.valueBits & (1L << getCellId(row, column))) != 0;
+        }
+
+        @Override
+        public double getValue(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            if (tile == null) {
+                return cellSource == null ? 0.0 : cellSource.getValue(row, column);
+            }
+            return tile.values[getCellId(row, column)];
+        }
+
+        @Override
+        public boolean hasError(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            if (tile == null) {
+                return cellSource != null && cellSource.hasError(row, column);
+            }
+            return (tile.errorBits & (1L << getCellId(row, column))) != 0;
+        }
+
+        @Override
+        public String getErrorMessage(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            if (tile == null) {
+                return cellSource == null ? null : cellSource.getErrorMessage(row, column);
+            }
+            return tile.errorMessages[getCellId(row, column)];
+        }
+
+        @Override
+        public boolean isValidFormula(int row, int column) {
+            if (getTile(frozenTileRows, row, column) == null) {
+                return cellSource != null && cellSource.isValidFormula(row, column);
+            }
+            return parseFormula(getText(row, column)) != null;
+        }
+
+        public boolean isDirty(int row, int column) {
+            Tile tile = getTile(frozenTileRows, row, column);
+            return tile != null && (tile.dirtyBits & (1L << getCellId(row, column))) != 0;
+        }
+
+        public int getDirtyCount() {
+            return frozenDirtyCount;
+        }
+
+        @Override
+        public void forEachCellPosition(Consumer<CellPosition> cellPositionConsumer) {
+            FrozenTileCursor frozenTileCursor = new FrozenTileCursor();
+            if (cellSource != null) {
+                cellSource.forEachCellPosition(cellPosition -> {
+                    long tileKey = getTileKey(cellPosition.row, cellPosition.column);
+                    frozenTileCursor.forEachCellPositionBefore(tileKey, cellPositionConsumer);
+                    if (!frozenTileCursor.isAt(tileKey)) {
+                        cellPositionConsumer.accept(cellPosition);
+                    }
+                });
+            }
+            frozenTileCursor.forEachCellPositionBefore(Long.MAX_VALUE, cellPositionConsumer);
+        }
+
+        public void forEachTileRow(Consumer<List<SavedCellInfo>> tileRowConsumer) {
+            List<SavedCellInfo> tileRowCellInfos = new ArrayList<>();
+            forEachCellPosition(cellPosition -> {
+                if (!tileRowCellInfos.isEmpty() &&
+                        tileRowCellInfos.get(0).cellPosition.row >>> TILE_ROW_BITS != cellPosition.row >>> TILE_ROW_BITS) {
+                    tileRowConsumer.accept(new ArrayList<>(tileRowCellInfos));
+                    tileRowCellInfos.clear();
+                }
+                tileRowCellInfos.add(getSavedCellInfo(cellPosition.row, cellPosition.column));
+            });
+            if (!tileRowCellInfos.isEmpty()) {
+                tileRowConsumer.accept(tileRowCellInfos);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!isClosed) {
+                isClosed = true;
+                frozenTileSetCount.decrementAndGet();
+            }
+        }
+
+        private SavedCellInfo getSavedCellInfo(int row, int column) {
+            String text = getText(row, column);
+            Set<CellPosition> cellPositionsInFormula = new HashSet<>();
+            Set<CellDiapason> cellDiapasonsInFormula = new HashSet<>();
+            TreeNode treeNode = parseFormula(text);
+            if (treeNode != null) {
+                treeNode.addAllCellPositions(cellPositionsInFormula);
+                treeNode.addAllCellDiapasons(cellDiapasonsInFormula);
+            }
+            return new SavedCellInfo(new CellPosition(row, column), text, hasValue(row, column), getValue(row, column),
+                    getErrorMessage(row, column), treeNode != null, isDirty(row, column),
+                    new ArrayList<>(cellPositionsInFormula), new ArrayList<>(cellDiapasonsInFormula));
+        }
+
+        private class FrozenTileCursor {
+            private int tileRowId = 0;
+            private int tileColumn = -1;
+            private Tile tile;
+
+            private FrozenTileCursor() {
+                moveToNextTile();
+            }
+
+            private void forEachCellPositionBefore(long tileKey, Consumer<CellPosition> cellPositionConsumer) {
+                while (tile != null && getTileKey(tile) < tileKey) {
+                    for (int cellId = 0; cellId < TILE_SIZE; cellId++) {
+                        if (tile.cells[cellId] != null) {
+                            cellPositionConsumer.accept(new CellPosition((tile.tileRow << TILE_ROW_BITS) | (cellId >>> TILE_COLUMN_BITS),
+                                    (tile.tileColumn << TILE_COLUMN_BITS) | (cellId & (TILE_COLUMNS - 1))));
+                        }
+                    }
+                    moveToNextTile();
+                }
+            }
+
+            private boolean isAt(long tileKey) {
+                return tile != null && getTileKey(tile) == tileKey;
+            }
+
+            private void moveToNextTile() {
+                tileColumn++;
+                while (tileRowId < frozenTileRows.length) {
+                    TileRow tileRow = frozenTileRows[tileRowId];
+                    for (; tileRow != null && tileColumn < tileRow.tiles.length; tileColumn++) {
+                        if (tileRow.tiles[tileColumn] != null) {
+                            tile = tileRow.tiles[tileColumn];
+                            return;
+                        }
+                    }
+                    tileRowId++;
+                    tileColumn = 0;
+                }
+                tile = null;
+            }
+        }
+    }
+
+    private static class TileRow {
+        private Tile[] tiles;
+        private int version;
+
+        private TileRow(Tile[] tiles, int version) {
+            this.tiles = tiles;
+            this.version = version;
+        }
+    }
+
+    private static class Tile {
+        private final int tileRow;
+        private final int tileColumn;
+        private final CellElement[] cells;
+        private final double[] values;
+        private final String[] errorMessages;
+        private long valueBits = 0;
+        private long errorBits = 0;
+        private long dirtyBits = 0;
+        private int size = 0;
+        private boolean isFromCellSource = false;
+        private int version;
+
+        private Tile(int tileRow, int tileColumn, int version) {
+            this.tileRow = tileRow;
+            this.tileColumn = tileColumn;
+            this.cells = new CellElement[TILE_SIZE];
+            this.values = new double[TILE_SIZE];
+            this.errorMessages = new String[TILE_SIZE];
+            this.version = version;
+        }
+
+        private Tile(Tile tile, int version) {
+            this.tileRow = tile.tileRow;
+            this.tileColumn = tile.tileColumn;
+            this.cells = tile.cells.clone();
+            this.values = tile.values.clone();
+            this.errorMessages = tile.errorMessages.clone();
+            this.valueBits = tile.valueBits;
+            this.errorBits = tile.errorBits;
+            this.dirtyBits = tile.dirtyBits;
+            this.size = tile.size;
+            this.isFromCellSource = tile.isFromCellSource;
+            this.version = version;
+        }
+    }
+}
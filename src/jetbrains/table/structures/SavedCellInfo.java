@@ -0,0 +1,35 @@
+package jetbrains.table.structures;
+
+import java.util.List;
+
+public class SavedCellInfo {
+    public final CellPosition cellPosition;
+    public final String text;
+    public final boolean hasValue;
+    public final double value;
+    public final String errorMessage;
+    public final boolean isValidFormula;
+    public final boolean isDirty;
+    public final List<CellPosition> cellPositionsInFormula;
+    public final List<CellDiapason> cellDiapasonsInFormula;
+
+    public SavedCellInfo(CellPosition cellPosition,
+                         String text,
+                         boolean hasValue,
+                         double value,
+                         String errorMessage,
+                         boolean isValidFormula,
+                         boolean isDirty,
+                         List<CellPosition> cellPositionsInFormula,
+                         List<CellDiapason> cellDiapasonsInFormula) {
+        this.cellPosition = cellPosition;
+        this.text = text;
+        this.hasValue = hasValue;
+        this.value = value;
+        this.errorMessage = errorMessage;
+        this.isValidFormula = isValidFormula;
+        this.isDirty = isDirty;
+        this.cellPositionsInFormula = cellPositionsInFormula;
+        this.cellDiapasonsInFormula = cellDiapasonsInFormula;
+    }
+}
@@ -0,0 +1,124 @@
+package jetbrains.formulas.calculator;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.parser.nodes.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+import java.util.function.BiFunction;
+
+import static jetbrains.formulas.parser.FormulaParser.parse;
+
+class BytecodeCompilerTest {
+    private static final int ROWS = 40_000;
+    private static final int COLUMNS = 5;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "1",
+            "-1.1",
+            "-0",
+            "=-0",
+            "=0-0",
+            "=-(-(-2))",
+            "=2+2*2",
+            "=(2+2)*2/3-1",
+            "=1/0-A1",
+            "=A1*(-B2+1)/C3",
+            "=AD39999+E40000-A128+A32768",
+            "=sin(A1)*cos(B2)+tan(C3)-ln(D4)+exp(-E5)+abs(A6)",
+            "=pow(A1, 2)+pow(2, pow(B1, 0.5))",
+            "=sum(A1:B3, C4)*min(A1, 2)-max(A1:A3)",
+            "=mean(A1:E5)+std(A1:A100)+cor(A1:A5, B1:B5)",
+            "=sin(sum(A1, B1))+pow(A1:A2)"
+    })
+    public void compileTest(String text) throws ParserException {
+        double[][] tableValues = getTableValues();
+        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> tableValues[row][column - 1];
+        TreeNode tree = parse(text);
+        Object expectedValue;
+        try {
+            expectedValue = tree.calculate(tableValuesFunction);
+        } catch (FunctionParameterException | FormulaCalculatorException e) {
+            expectedValue = e.getClass();
+        }
+        Object actualValue;
+        try {
+            actualValue = BytecodeCompiler.compile(tree).eval(tableValuesFunction::apply);
+        } catch (FunctionParameterException | FormulaCalculatorException e) {
+            actualValue = e.getClass();
+        }
+        Assertions.assertEquals(expectedValue, actualValue);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"=F1", "=A1+sin(F2)", "=sum(A1:F1)", "=A40001*2"})
+    public void cellOutsideTableTest(String text) throws ParserException {
+        double[][] tableValues = getTableValues();
+        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> tableValues[row][column - 1];
+        TreeNode tree = parse(text);
+        FormulaCalculatorException calculateException =
+                Assertions.assertThrows(FormulaCalculatorException.class, () -> tree.calculate(tableValuesFunction));
+        FormulaCalculatorException evalException = Assertions.assertThrows(FormulaCalculatorException.class,
+                () -> BytecodeCompiler.compile(tree).eval(tableValuesFunction::apply));
+        Assertions.assertEquals(calculateException.getMessage(), evalException.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"=sin()", "=sin(1, 2)", "=sin(A1:A2)", "=pow(1)", "=pow(1, A1:B2)", "=1+cor(A1:A2, 3)"})
+    public void functionParameterExceptionTest(String text) throws ParserException {
+        DoubleEvaluator formulaEvaluator = BytecodeCompiler.compile(parse(text));
+        Assertions.assertThrows(FunctionParameterException.class, () -> formulaEvaluator.eval((row, column) -> 0.0));
+    }
+
+    @Test
+    public void longFormulaTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        String text = "=A1" + "+A1".repeat(20_000);
+        DoubleEvaluator formulaEvaluator = BytecodeCompiler.compile(parse(text));
+        Assertions.assertEquals(20_001.0, formulaEvaluator.eval((row, column) -> 1.0));
+    }
+
+    @Test
+    public void constantPoolOverflowTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        StringBuilder text = new StringBuilder("=A1");
+        for (int i = 0; i < 40_000; i++) {
+            text.append("+").append(i).append(".5");
+        }
+        TreeNode tree = parse(text.toString());
+        Assertions.assertNull(BytecodeCompiler.tryCompile(tree));
+
+        TieredDoubleEvaluator formulaEvaluator = new TieredDoubleEvaluator(tree, 10);
+        for (int i = 1; i <= 20; i++) {
+            double value = i;
+            Assertions.assertEquals(tree.calculate((row, column) -> value), formulaEvaluator.eval((row, column) -> value));
+            Assertions.assertFalse(formulaEvaluator.isCompiled());
+        }
+        Assertions.assertEquals(tree.calculate((row, column) -> 1.0), BytecodeCompiler.compile(tree).eval((row, column) -> 1.0));
+    }
+
+    @Test
+    public void tieredDoubleEvaluatorTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        TieredDoubleEvaluator formulaEvaluator = new TieredDoubleEvaluator(parse("=A1*2+sin(B1)"), 10);
+        for (int i = 1; i <= 20; i++) {
+            double value = i;
+            Assertions.assertEquals(value * 2 + Math.sin(value), formulaEvaluator.eval((row, column) -> value));
+            Assertions.assertEquals(i >= 10, formulaEvaluator.isCompiled());
+        }
+    }
+
+    private static double[][] getTableValues() {
+        Random random = new Random(0);
+        double[][] tableValues = new double[ROWS][COLUMNS];
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                tableValues[row][column] = random.nextGaussian() * 10;
+            }
+        }
+        return tableValues;
+    }
+}
@@ -6,6 +6,7 @@ import jetbrains.exceptions.ParserException;
 import jetbrains.formulas.parser.nodes.TreeNode;
 import jetbrains.table.TableGenerator;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -50,6 +51,14 @@ class FormulaCalculatorTest {
         Assertions.assertEquals(expectedValue, actualValue);
     }
 
+    @ParameterizedTest
+    @MethodSource("calculateFormulaSource")
+    public void compileFormulaTest(String text, BiFunction<Integer, Integer, Double> tableValuesFunction, double expectedValue) throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        DoubleEvaluator formulaEvaluator = parse(text).compile();
+        double actualValue = formulaEvaluator.eval(tableValuesFunction::apply);
+        Assertions.assertEquals(expectedValue, actualValue);
+    }
+
     private static Stream<Arguments> functionParameterExceptionSource() {
         return Stream.of(
                 Arguments.of("=sin()"),
@@ -71,6 +80,58 @@ class FormulaCalculatorTest {
         Assertions.assertThrows(FunctionParameterException.class, () -> tree.calculate(tableValuesFunction));
     }
 
+    @ParameterizedTest
+    @MethodSource("functionParameterExceptionSource")
+    public void compiledFunctionParameterExceptionTest(String text) throws ParserException {
+        final ValueSource valueSource = getTableValuesFunction(Map.of())::apply;
+        DoubleEvaluator formulaEvaluator = parse(text).compile();
+        Assertions.assertThrows(FunctionParameterException.class, () -> formulaEvaluator.eval(valueSource));
+    }
+
+    private static Stream<Arguments> cellOutsideTableSource() {
+        return Stream.of(
+                Arguments.of("=C1", "Cell C1 is outside the table."),
+                Arguments.of("=sin(A1) + 2 * C2", "Cell C2 is outside the table."),
+                Arguments.of("=sum(A1:C3)", "Cell C1 is outside the table.")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("cellOutsideTableSource")
+    public void cellOutsideTableTest(String text, String expectedMessage) throws ParserException {
+        double[][] tableValues = new double[2][2];
+        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> tableValues[row][column - 1];
+        TreeNode tree = parse(text);
+        FormulaCalculatorException calculateException =
+                Assertions.assertThrows(FormulaCalculatorException.class, () -> tree.calculate(tableValuesFunction));
+        FormulaCalculatorException evalException =
+                Assertions.assertThrows(FormulaCalculatorException.class, () -> tree.compile().eval(tableValuesFunction::apply));
+        Assertions.assertEquals(expectedMessage, calculateException.getMessage());
+        Assertions.assertEquals(expectedMessage, evalException.getMessage());
+    }
+
+    @Test
+    public void compiledCellDiapasonTest() throws ParserException {
+        TreeNode cellDiapasonNode = findCellDiapasonNode(parse("=sum(A1:B2)"));
+        DoubleEvaluator formulaEvaluator = cellDiapasonNode.compile();
+        FormulaCalculatorException exception = Assertions.assertThrows(FormulaCalculatorException.class,
+                () -> formulaEvaluator.eval(getTableValuesFunction(Map.of())::apply));
+        Assertions.assertEquals("Cell diapason can be used only as a function parameter.", exception.getMessage());
+    }
+
+    private static TreeNode findCellDiapasonNode(TreeNode treeNode) {
+        if (treeNode.formulaCalculator == FormulaCalculator.CELL_DIAPASON) {
+            return treeNode;
+        }
+        for (TreeNode child : treeNode.children) {
+            TreeNode cellDiapasonNode = findCellDiapasonNode(child);
+            if (cellDiapasonNode != null) {
+                return cellDiapasonNode;
+            }
+        }
+        return null;
+    }
+
     private static BiFunction<Integer, Integer, Double> getTableValuesFunction(Map<String, Double> cellNameToValue) {
         return (row, column) -> {
             String cellName = TableGenerator.getColumnNameById(column - 1) + (row + 1);
@@ -0,0 +1,98 @@
+package jetbrains.formulas.calculator.functions;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.calculator.CellValueJournal;
+import jetbrains.formulas.calculator.DoubleEvaluator;
+import jetbrains.formulas.calculator.ValueSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+
+import java.util.Random;
+
+import static jetbrains.formulas.parser.FormulaParser.parse;
+
+class IncrementalRangeEvaluatorTest {
+    private static final int ROWS = 10_000;
+    private static final int COLUMNS = 3;
+
+    @ParameterizedTest
+    @org.junit.jupiter.params.provider.ValueSource(strings = {
+            "=sum(A1:C10000)", "=mean(A1:A10000)", "=std(A1:B10000)", "=sum(A1:A5000, A2500:B7500)", "=std(B1:B2)"
+    })
+    public void incrementalRangeEvaluatorTest(String text) throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        TestValueSource valueSource = new TestValueSource(new CellValueJournal(64));
+        DoubleEvaluator incrementalEvaluator = parse(text).compile();
+        DoubleEvaluator fullEvaluator = parse(text).compile();
+        Random random = new Random(0);
+        for (int i = 0; i < 3 * IncrementalRangeEvaluator.DRIFT_THRESHOLD; i++) {
+            int changeCount = i % 100 == 0 ? 100 : 1;
+            for (int j = 0; j < changeCount; j++) {
+                valueSource.setValue(random.nextInt(ROWS), 1 + random.nextInt(COLUMNS), random.nextGaussian() * 1000 + 5000);
+            }
+            double expectedValue = fullEvaluator.eval(valueSource::getValue);
+            double actualValue = incrementalEvaluator.eval(valueSource);
+            Assertions.assertEquals(expectedValue, actualValue, 1e-9 * Math.max(1, Math.abs(expectedValue)));
+        }
+    }
+
+    @Test
+    public void constantReadsAfterOneChangeTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        TestValueSource valueSource = new TestValueSource(new CellValueJournal());
+        DoubleEvaluator formulaEvaluator = parse("=sum(A1:C10000)").compile();
+        double sum = formulaEvaluator.eval(valueSource);
+        valueSource.readCount = 0;
+        for (int i = 0; i < 100; i++) {
+            double oldValue = valueSource.tableValues[i][1];
+            valueSource.setValue(i, 2, oldValue + 1);
+            sum += 1;
+            Assertions.assertEquals(sum, formulaEvaluator.eval(valueSource), 1e-6);
+        }
+        Assertions.assertEquals(0, valueSource.readCount);
+    }
+
+    @Test
+    public void nonFiniteValueTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        TestValueSource valueSource = new TestValueSource(new CellValueJournal());
+        DoubleEvaluator formulaEvaluator = parse("=sum(A1:A10)").compile();
+        formulaEvaluator.eval(valueSource);
+        valueSource.setValue(3, 1, Double.POSITIVE_INFINITY);
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, formulaEvaluator.eval(valueSource));
+        valueSource.setValue(3, 1, 1.0);
+        Assertions.assertTrue(Double.isFinite(formulaEvaluator.eval(valueSource)));
+    }
+
+    private static class TestValueSource implements ValueSource {
+        private final double[][] tableValues = new double[ROWS][COLUMNS];
+        private final CellValueJournal cellValueJournal;
+        private int readCount = 0;
+
+        private TestValueSource(CellValueJournal cellValueJournal) {
+            this.cellValueJournal = cellValueJournal;
+            Random random = new Random(1);
+            for (int row = 0; row < ROWS; row++) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    tableValues[row][column] = random.nextGaussian() * 1000 + 5000;
+                }
+            }
+        }
+
+        private void setValue(int row, int column, double value) {
+            cellValueJournal.add(row, column, tableValues[row][column - 1], value);
+            tableValues[row][column - 1] = value;
+        }
+
+        @Override
+        public double getValue(int row, int column) {
+            readCount++;
+            return tableValues[row][column - 1];
+        }
+
+        @Override
+        public CellValueJournal getCellValueJournal() {
+            return cellValueJournal;
+        }
+    }
+}
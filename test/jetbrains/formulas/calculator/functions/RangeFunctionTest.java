@@ -0,0 +1,190 @@
+package jetbrains.formulas.calculator.functions;
+
+import com.sun.management.ThreadMXBean;
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.calculator.DoubleEvaluator;
+import jetbrains.formulas.calculator.ValueSource;
+import jetbrains.formulas.parser.nodes.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import static jetbrains.formulas.parser.FormulaParser.parse;
+
+class RangeFunctionTest {
+    private static final int ROWS = 1000;
+    private static final int COLUMNS = 4;
+
+    private static Stream<Arguments> rangeFunctionSource() {
+        double[][] randomValues = getRandomValues(0);
+        double[][] specialValues = getRandomValues(1);
+        specialValues[3][0] = Double.NaN;
+        specialValues[5][0] = Double.POSITIVE_INFINITY;
+        specialValues[7][0] = Double.NEGATIVE_INFINITY;
+        specialValues[9][0] = -0.0;
+        specialValues[10][0] = 0.0;
+        specialValues[12][1] = -0.0;
+        specialValues[13][1] = 0.0;
+        return Stream.of(
+                "=sum(A1:D1000)", "=sum(A1:A1000, 5, B3:C7, -A1)", "=sum(1)",
+                "=mean(A1:D1000)", "=mean(B2:B2, 3, A1:D10)",
+                "=min(A1:D1000)", "=min(A1:A3, -100, B1:B5)", "=min(B12:B14)", "=min(B13:B14, -A1)",
+                "=max(A1:D1000)", "=max(A1:A3, 100, B1:B5)", "=max(B12:B14)", "=max(A10:A11)",
+                "=std(A1:D1000)", "=std(A1:A10, 7, C1:D3)",
+                "=min(A1:A20)", "=max(A1:A20)", "=sum(A1:A20)", "=std(A1:A6)"
+        ).flatMap(text -> Stream.of(Arguments.of(text, randomValues), Arguments.of(text, specialValues)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("rangeFunctionSource")
+    public void rangeFunctionTest(String text, double[][] tableValues) throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> tableValues[row][column - 1];
+        TreeNode tree = parse(text);
+        Object expectedValue = tree.calculate(tableValuesFunction);
+        double actualValue = tree.compile().eval(tableValuesFunction::apply);
+        Assertions.assertEquals(expectedValue, actualValue);
+    }
+
+    private static Stream<Arguments> corSource() {
+        double[][] tableValues = getRandomValues(2);
+        for (int row = 0; row < ROWS; row++) {
+            tableValues[row][1] = 0.3 * tableValues[row][0] + tableValues[row][1];
+        }
+        return Stream.of(
+                Arguments.of("=cor(A1:A1000, B1:B1000)", tableValues),
+                Arguments.of("=cor(A1:B500, C1:D500)", tableValues),
+                Arguments.of("=cor(A1:B10, C1:C20)", tableValues),
+                Arguments.of("=cor(A1:A10, B1:B11)", tableValues)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("corSource")
+    public void corTest(String text, double[][] tableValues) throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> tableValues[row][column - 1];
+        TreeNode tree = parse(text);
+        double expectedValue = (double) tree.calculate(tableValuesFunction);
+        double actualValue = tree.compile().eval(tableValuesFunction::apply);
+        Assertions.assertEquals(expectedValue, actualValue, 1e-12);
+    }
+
+    private static Stream<Arguments> stdAndCorAccuracySource() {
+        return Stream.of(
+                Arguments.of(0.0, 1.0),
+                Arguments.of(1e6, 1e-3),
+                Arguments.of(1e9, 1.0),
+                Arguments.of(-1e12, 10.0)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("stdAndCorAccuracySource")
+    public void stdAndCorAccuracyTest(double offset, double scale) throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        double[][] tableValues = getRandomValues(5);
+        for (int row = 0; row < ROWS; row++) {
+            tableValues[row][0] = offset + scale * tableValues[row][0];
+            tableValues[row][1] = offset + scale * (tableValues[row][1] + tableValues[row][0] / scale);
+        }
+        ValueSource valueSource = (row, column) -> tableValues[row][column - 1];
+        double[] xs = new double[ROWS];
+        double[] ys = new double[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            xs[row] = tableValues[row][0];
+            ys[row] = tableValues[row][1];
+        }
+
+        double std = parse("=std(A1:A1000)").compile().eval(valueSource);
+        Assertions.assertEquals(getExactStd(xs), std, 1e-7 * getExactStd(xs));
+        Assertions.assertEquals(getTwoPassStd(xs), std, 1e-7 * getExactStd(xs));
+
+        double cor = parse("=cor(A1:A1000, B1:B1000)").compile().eval(valueSource);
+        Assertions.assertEquals(getTwoPassCor(xs, ys), cor, 1e-6);
+    }
+
+    @Test
+    public void cellDiapasonOutsideTableTest() throws ParserException {
+        double[][] tableValues = getRandomValues(3);
+        BiFunction<Integer, Integer, Double> tableValuesFunction = (row, column) -> tableValues[row][column - 1];
+        for (String text : new String[]{"=sum(A1:E2)", "=min(A999:A1001)", "=cor(A1:A2, E1:E2)", "=std(A1:A2, F7, E1:E2)"}) {
+            TreeNode tree = parse(text);
+            FormulaCalculatorException calculateException =
+                    Assertions.assertThrows(FormulaCalculatorException.class, () -> tree.calculate(tableValuesFunction));
+            FormulaCalculatorException evalException =
+                    Assertions.assertThrows(FormulaCalculatorException.class, () -> tree.compile().eval(tableValuesFunction::apply));
+            Assertions.assertEquals(calculateException.getMessage(), evalException.getMessage());
+        }
+    }
+
+    @Test
+    public void zeroAllocationTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        double[][] tableValues = getRandomValues(4);
+        ValueSource valueSource = (row, column) -> tableValues[row][column - 1];
+        DoubleEvaluator formulaEvaluator = parse("=sum(A1:D1000) + mean(A1:A1000, 2) - min(A1:D1000) * max(B1:C1000)" +
+                " + std(A1:D1000) + cor(A1:A1000, B1:B1000)").compile();
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double value = 0;
+        for (int i = 0; i < 1000; i++) {
+            value += formulaEvaluator.eval(valueSource);
+        }
+        long allocatedBytesBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            value += formulaEvaluator.eval(valueSource);
+        }
+        long allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBytesBefore;
+        Assertions.assertTrue(Double.isFinite(value));
+        Assertions.assertTrue(allocatedBytes < 1000, "Allocated " + allocatedBytes + " bytes in 1000 evaluations");
+    }
+
+    private static double getExactStd(double[] xs) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (double x : xs) {
+            sum = sum.add(new BigDecimal(x));
+        }
+        BigDecimal mean = sum.divide(BigDecimal.valueOf(xs.length), MathContext.DECIMAL128);
+        BigDecimal deviationSquareSum = BigDecimal.ZERO;
+        for (double x : xs) {
+            BigDecimal deviation = new BigDecimal(x).subtract(mean);
+            deviationSquareSum = deviationSquareSum.add(deviation.multiply(deviation));
+        }
+        return deviationSquareSum.divide(BigDecimal.valueOf(xs.length), MathContext.DECIMAL128).sqrt(MathContext.DECIMAL128).doubleValue();
+    }
+
+    private static double getTwoPassStd(double[] xs) {
+        double mean = Arrays.stream(xs).reduce(0.0, Double::sum) / xs.length;
+        double stdSum = Arrays.stream(xs).reduce(0.0, (a, b) -> (a + (b - mean) * (b - mean)));
+        return Math.sqrt(stdSum / xs.length);
+    }
+
+    private static double getTwoPassCor(double[] xs, double[] ys) {
+        double xMean = Arrays.stream(xs).reduce(0.0, Double::sum) / xs.length;
+        double yMean = Arrays.stream(ys).reduce(0.0, Double::sum) / ys.length;
+        double xyDeviationProductSum = 0;
+        for (int i = 0; i < xs.length; i++) {
+            xyDeviationProductSum += (xs[i] - xMean) * (ys[i] - yMean);
+        }
+        return xyDeviationProductSum / xs.length / (getTwoPassStd(xs) * getTwoPassStd(ys));
+    }
+
+    private static double[][] getRandomValues(int seed) {
+        Random random = new Random(seed);
+        double[][] tableValues = new double[ROWS][COLUMNS];
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                tableValues[row][column] = random.nextGaussian() * 100;
+            }
+        }
+        return tableValues;
+    }
+}
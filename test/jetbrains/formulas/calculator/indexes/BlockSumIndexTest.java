@@ -0,0 +1,90 @@
+package jetbrains.formulas.calculator.indexes;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.calculator.ValueSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static jetbrains.formulas.parser.FormulaParser.parse;
+
+class BlockSumIndexTest {
+    private static final int SIZE = 10_000;
+
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(0);
+        double[] values = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = random.nextGaussian() * 1e6;
+        }
+        BlockSumIndex sumIndex = new BlockSumIndex(values.clone());
+        ValueSource valueSource = (row, column) -> values[row];
+        for (int operation = 0; operation < 10_000; operation++) {
+            if (random.nextBoolean()) {
+                int id = random.nextInt(SIZE);
+                values[id] = random.nextInt(50) == 0 ? Double.POSITIVE_INFINITY : random.nextGaussian() * 1e6;
+                sumIndex.set(id, values[id]);
+            } else {
+                int fromId = random.nextInt(SIZE);
+                int toId = fromId + random.nextInt(SIZE - fromId);
+                double expectedSum = 0;
+                for (int id = fromId; id <= toId; id++) {
+                    expectedSum += values[id];
+                }
+                double actualSum = sumIndex.getSum(fromId, toId);
+                Assertions.assertEquals(BlockSumIndex.getSum(valueSource, 1, fromId, toId), actualSum);
+                Assertions.assertEquals(expectedSum, actualSum, Double.isFinite(expectedSum) ? 1e-6 : 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void indexedAndScannedSumsAreEqualTest() throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        Random random = new Random(1);
+        double[][] tableValues = new double[SIZE][2];
+        for (int row = 0; row < SIZE; row++) {
+            tableValues[row][0] = random.nextGaussian() * 1e6;
+            tableValues[row][1] = random.nextDouble();
+        }
+        ColumnIndexes columnIndexes = new ColumnIndexes(SIZE, 3);
+        ValueSource valueSource = new ValueSource() {
+            @Override
+            public double getValue(int row, int column) {
+                return tableValues[row][column - 1];
+            }
+
+            @Override
+            public ColumnIndexes getColumnIndexes() {
+                return columnIndexes;
+            }
+        };
+        for (String text : new String[]{"=sum(A1:A1000)", "=sum(A3:A9999)", "=sum(A1:B5000, A70:A200)", "=mean(A17:A8193)"}) {
+            double expectedValue = parse(text).compile().eval(valueSource);
+            for (int i = 0; i < 2 * ColumnIndexes.QUERIES_TO_BUILD_INDEX; i++) {
+                Assertions.assertEquals(expectedValue, parse(text).compile().eval(valueSource), text);
+            }
+        }
+        Assertions.assertNotNull(columnIndexes.getSumIndex(1, valueSource));
+        Assertions.assertNotNull(columnIndexes.getSumIndex(2, valueSource));
+    }
+
+    @Test
+    public void columnIndexesBuildTest() {
+        double[][] tableValues = new double[SIZE][2];
+        ColumnIndexes columnIndexes = new ColumnIndexes(SIZE, 3);
+        for (int i = 1; i < ColumnIndexes.QUERIES_TO_BUILD_INDEX; i++) {
+            Assertions.assertNull(columnIndexes.getSumIndex(1, (row, column) -> tableValues[row][column - 1]));
+        }
+        tableValues[5][0] = 2.0;
+        BlockSumIndex sumIndex = columnIndexes.getSumIndex(1, (row, column) -> tableValues[row][column - 1]);
+        Assertions.assertNotNull(sumIndex);
+        Assertions.assertNull(columnIndexes.getSumIndex(2, (row, column) -> tableValues[row][column - 1]));
+        columnIndexes.onValueChanged(7, 1, 3.0);
+        columnIndexes.onValueChanged(7, 2, 100.0);
+        Assertions.assertEquals(5.0, sumIndex.getSum(0, SIZE - 1));
+    }
+}
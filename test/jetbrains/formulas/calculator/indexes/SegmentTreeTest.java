@@ -0,0 +1,65 @@
+package jetbrains.formulas.calculator.indexes;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class SegmentTreeTest {
+    private static final int SIZE = 1000;
+    private static final double[] SPECIAL_VALUES = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, 0.0};
+
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(0);
+        double[] values = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = getRandomValue(random);
+        }
+        SegmentTree segmentTree = new SegmentTree(values.clone());
+        for (int operation = 0; operation < 10 * SIZE; operation++) {
+            if (random.nextBoolean()) {
+                int id = random.nextInt(SIZE);
+                values[id] = getRandomValue(random);
+                segmentTree.set(id, values[id]);
+            } else {
+                int fromId = random.nextInt(SIZE);
+                int toId = fromId + random.nextInt(SIZE - fromId);
+                double expectedMin = Double.NaN;
+                double expectedMax = Double.NEGATIVE_INFINITY;
+                for (int id = fromId; id <= toId; id++) {
+                    expectedMin = Double.compare(expectedMin, values[id]) > 0 ? values[id] : expectedMin;
+                    expectedMax = Double.compare(expectedMax, values[id]) < 0 ? values[id] : expectedMax;
+                }
+                Assertions.assertEquals(expectedMin, segmentTree.getMin(fromId, toId));
+                Assertions.assertEquals(expectedMax, segmentTree.getMax(fromId, toId));
+            }
+        }
+    }
+
+    @Test
+    public void columnIndexesBuildTest() {
+        double[][] tableValues = new double[SIZE][2];
+        ColumnIndexes columnIndexes = new ColumnIndexes(SIZE, 3);
+        for (int i = 1; i < ColumnIndexes.QUERIES_TO_BUILD_INDEX; i++) {
+            Assertions.assertNull(columnIndexes.getMinMaxIndex(1, (row, column) -> tableValues[row][column - 1]));
+        }
+        tableValues[5][0] = -2.0;
+        SegmentTree minMaxIndex = columnIndexes.getMinMaxIndex(1, (row, column) -> tableValues[row][column - 1]);
+        Assertions.assertNotNull(minMaxIndex);
+        Assertions.assertNull(columnIndexes.getMinMaxIndex(2, (row, column) -> tableValues[row][column - 1]));
+        columnIndexes.onValueChanged(7, 1, 3.0);
+        columnIndexes.onValueChanged(7, 2, 100.0);
+        Assertions.assertEquals(-2.0, minMaxIndex.getMin(0, SIZE - 1));
+        Assertions.assertEquals(3.0, minMaxIndex.getMax(0, SIZE - 1));
+        columnIndexes.onValueChanged(5, 1, 0.0);
+        Assertions.assertEquals(0.0, minMaxIndex.getMin(0, SIZE - 1));
+    }
+
+    private static double getRandomValue(Random random) {
+        if (random.nextInt(20) == 0) {
+            return SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)];
+        }
+        return random.nextInt(100) - 50;
+    }
+}
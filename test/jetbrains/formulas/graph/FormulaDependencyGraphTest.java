@@ -1,14 +1,17 @@
 package jetbrains.formulas.graph;
 
 import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.table.structures.CellDiapason;
 import jetbrains.table.structures.CellPosition;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -178,6 +181,167 @@ class FormulaDependencyGraphTest {
         Assertions.assertThrows(FormulaCalculatorException.class, () -> formulaDependencyGraph.getCalculateOrder(startCellPosition));
     }
 
+    @Test
+    public void getCalculateOrderLongChainTest() throws FormulaCalculatorException {
+        int chainLength = 1_000_000;
+        for (int row = 1; row < chainLength; row++) {
+            formulaDependencyGraph.addEdge(new CellPosition(row - 1, 1), new CellPosition(row, 1));
+        }
+        List<CellPosition> calculateOrder = formulaDependencyGraph.getCalculateOrder(new CellPosition(0, 1));
+        Assertions.assertEquals(chainLength, calculateOrder.size());
+        for (int row = 0; row < chainLength; row++) {
+            Assertions.assertEquals(row, calculateOrder.get(row).row);
+        }
+
+        formulaDependencyGraph.addEdge(new CellPosition(chainLength - 1, 1), new CellPosition(0, 1));
+        Assertions.assertThrows(FormulaCalculatorException.class,
+                () -> formulaDependencyGraph.getCalculateOrder(new CellPosition(chainLength / 2, 1)));
+    }
+
+    private static Stream<Arguments> getCalculateOrderForManyCellsSource() {
+        return Stream.of(
+                Arguments.of(
+                        List.of(),
+                        List.of(CELL1, CELL2),
+                        List.of(CELL1, CELL2),
+                        List.of()
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(CELL2, CELL3),
+                                addEdgeConsumer(CELL1, CELL2)
+                        ),
+                        List.of(CELL3, CELL2, CELL1),
+                        List.of(CELL1, CELL2, CELL3),
+                        List.of()
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(CELL1, CELL2),
+                                addEdgeConsumer(CELL2, CELL3),
+                                addEdgeConsumer(CELL1, CELL3),
+                                addEdgeConsumer(CELL2, CELL4),
+                                addEdgeConsumer(CELL3, CELL4)
+                        ),
+                        List.of(CELL4, CELL3, CELL2, CELL1),
+                        List.of(CELL1, CELL2, CELL3, CELL4),
+                        List.of()
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(CELL1, CELL2),
+                                addEdgeConsumer(CELL2, CELL3),
+                                addEdgeConsumer(CELL3, CELL2),
+                                addEdgeConsumer(CELL3, CELL4)
+                        ),
+                        List.of(CELL1),
+                        List.of(CELL1),
+                        List.of(CELL2, CELL3, CELL4)
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(CELL1, CELL1),
+                                addEdgeConsumer(CELL2, CELL3)
+                        ),
+                        List.of(CELL1, CELL2),
+                        List.of(CELL2, CELL3),
+                        List.of(CELL1)
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("getCalculateOrderForManyCellsSource")
+    public void getCalculateOrderForManyCellsTest(List<Consumer<FormulaDependencyGraph>> operationConsumers,
+                                                  List<CellPosition> startCellPositions,
+                                                  List<CellPosition> expectedCalculateOrder,
+                                                  List<CellPosition> expectedCyclicCellPositions) {
+        operationConsumers.forEach(operationConsumer -> operationConsumer.accept(formulaDependencyGraph));
+        FormulaDependencyGraph.CalculateOrder calculateOrder = formulaDependencyGraph.getCalculateOrder(startCellPositions);
+        Assertions.assertEquals(expectedCalculateOrder, calculateOrder.cellPositions);
+        Assertions.assertEquals(Set.copyOf(expectedCyclicCellPositions), Set.copyOf(calculateOrder.cyclicCellPositions));
+    }
+
+    private static Stream<Arguments> getCalculateOrderWithCellDiapasonsSource() {
+        return Stream.of(
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(new CellDiapason(CELL1, CELL3), CELL4)
+                        ),
+                        CELL2,
+                        List.of(CELL2, CELL4)
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(new CellDiapason(CELL1, CELL2), CELL4)
+                        ),
+                        CELL3,
+                        List.of(CELL3)
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(new CellDiapason(CELL1, CELL2), CELL3),
+                                addEdgeConsumer(CELL3, CELL4),
+                                addEdgeConsumer(new CellDiapason(CELL1, CELL3), CELL4)
+                        ),
+                        CELL1,
+                        List.of(CELL1, CELL3, CELL4)
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(new CellDiapason(CELL1, new CellPosition(1_000_000, 100)), new CellPosition(0, 200)),
+                                addEdgeConsumer(new CellDiapason(CELL1, CELL3), new CellPosition(0, 200))
+                        ),
+                        new CellPosition(1000, 50),
+                        List.of(new CellPosition(1000, 50), new CellPosition(0, 200))
+                ),
+                Arguments.of(
+                        List.of(
+                                addEdgeConsumer(new CellDiapason(CELL1, CELL3), CELL4),
+                                removeIncomingEdgesConsumer(CELL4)
+                        ),
+                        CELL2,
+                        List.of(CELL2)
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("getCalculateOrderWithCellDiapasonsSource")
+    public void getCalculateOrderWithCellDiapasonsTest(List<Consumer<FormulaDependencyGraph>> operationConsumers,
+                                                       CellPosition startCellPosition,
+                                                       List<CellPosition> expectedCalculateOrder) throws FormulaCalculatorException {
+        operationConsumers.forEach(operationConsumer -> operationConsumer.accept(formulaDependencyGraph));
+        for (int t = 0; t < 2; t++) {
+            Assertions.assertEquals(expectedCalculateOrder, formulaDependencyGraph.getCalculateOrder(startCellPosition));
+        }
+    }
+
+    @Test
+    public void getLevelsTest() {
+        CellPosition cell5 = new CellPosition(4, 4);
+        formulaDependencyGraph.addEdge(CELL1, CELL2);
+        formulaDependencyGraph.addEdge(CELL1, CELL3);
+        formulaDependencyGraph.addEdge(CELL2, CELL4);
+        formulaDependencyGraph.addEdge(new CellDiapason(CELL3, CELL4), cell5);
+        FormulaDependencyGraph.CalculateOrder calculateOrder = formulaDependencyGraph.getCalculateOrder(List.of(CELL1));
+        Assertions.assertEquals(List.of(Set.of(CELL1), Set.of(CELL2, CELL3), Set.of(CELL4), Set.of(cell5)),
+                calculateOrder.getLevels().stream().map(Set::copyOf).toList());
+    }
+
+    @Test
+    public void cycleGraphWithCellDiapasonTest() {
+        formulaDependencyGraph.addEdge(new CellDiapason(CELL1, CELL3), CELL2);
+        Assertions.assertThrows(FormulaCalculatorException.class, () -> formulaDependencyGraph.getCalculateOrder(CELL1));
+        formulaDependencyGraph.removeIncomingEdges(CELL2);
+        Assertions.assertDoesNotThrow(() -> formulaDependencyGraph.getCalculateOrder(CELL1));
+    }
+
+    private static Consumer<FormulaDependencyGraph> addEdgeConsumer(CellDiapason fromCellDiapason,
+                                                                    CellPosition toCellPosition) {
+        return formulaDependencyGraph -> formulaDependencyGraph.addEdge(fromCellDiapason, toCellPosition);
+    }
+
     private static Consumer<FormulaDependencyGraph> addEdgeConsumer(CellPosition fromCellPosition,
                                                                     CellPosition toCellPosition) {
         return formulaDependencyGraph -> formulaDependencyGraph.addEdge(fromCellPosition, toCellPosition);
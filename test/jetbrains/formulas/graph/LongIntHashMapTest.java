@@ -0,0 +1,49 @@
+package jetbrains.formulas.graph;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class LongIntHashMapTest {
+    private static Stream<Arguments> randomOperationsSource() {
+        return Stream.of(
+                Arguments.of(1, 10, 100),
+                Arguments.of(2, 1_000, 10_000),
+                Arguments.of(3, 100_000, 200_000),
+                Arguments.of(4, 50, 100_000)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("randomOperationsSource")
+    public void randomOperationsTest(int seed, int keysCount, int operationsCount) {
+        Random random = new Random(seed);
+        LongIntHashMap actualMap = new LongIntHashMap();
+        Map<Long, Integer> expectedMap = new HashMap<>();
+        for (int i = 0; i < operationsCount; i++) {
+            long key = ((long) random.nextInt(keysCount) << 32) - random.nextInt(3);
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expectedMap.getOrDefault(key, LongIntHashMap.NO_VALUE), actualMap.remove(key));
+                expectedMap.remove(key);
+            } else {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                actualMap.put(key, value);
+                expectedMap.put(key, value);
+            }
+            Assertions.assertEquals(expectedMap.size(), actualMap.size());
+        }
+        for (long key : expectedMap.keySet()) {
+            Assertions.assertEquals(expectedMap.get(key), actualMap.get(key));
+        }
+        for (int i = 0; i < keysCount; i++) {
+            long key = (long) i << 32;
+            Assertions.assertEquals(expectedMap.containsKey(key), actualMap.containsKey(key));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package jetbrains.formulas.parser;
+
+import jetbrains.exceptions.FormulaCalculatorException;
+import jetbrains.exceptions.FunctionParameterException;
+import jetbrains.exceptions.ParserException;
+import jetbrains.formulas.parser.nodes.TreeNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static jetbrains.formulas.parser.FormulaParser.parse;
+
+class CellTextTypeTest {
+    private static Stream<Arguments> cellTextTypeSource() {
+        return Stream.of(
+                Arguments.of("", CellTextType.EMPTY),
+                Arguments.of(" \t\n", CellTextType.EMPTY),
+                Arguments.of("1", CellTextType.NUMBER),
+                Arguments.of(" 3.14 ", CellTextType.NUMBER),
+                Arguments.of("3.", CellTextType.NUMBER),
+                Arguments.of("-2.7", CellTextType.NUMBER),
+                Arguments.of("- \t5", CellTextType.NUMBER),
+                Arguments.of("-0", CellTextType.NUMBER),
+                Arguments.of("=1", CellTextType.FORMULA),
+                Arguments.of("  =A1+", CellTextType.FORMULA),
+                Arguments.of("text", CellTextType.TEXT),
+                Arguments.of("-", CellTextType.TEXT),
+                Arguments.of(".5", CellTextType.TEXT),
+                Arguments.of("1 2", CellTextType.TEXT),
+                Arguments.of("1.2.3", CellTextType.TEXT),
+                Arguments.of("--1", CellTextType.TEXT),
+                Arguments.of("A1", CellTextType.TEXT),
+                Arguments.of("sin(1)", CellTextType.TEXT),
+                Arguments.of("1=", CellTextType.TEXT)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("cellTextTypeSource")
+    public void getCellTextTypeTest(String text, CellTextType expectedCellTextType) {
+        Assertions.assertEquals(expectedCellTextType, CellTextType.getCellTextType(text));
+    }
+
+    @ParameterizedTest
+    @MethodSource("cellTextTypeSource")
+    public void sameAsParserTest(String text, CellTextType cellTextType) throws ParserException, FunctionParameterException, FormulaCalculatorException {
+        if (cellTextType == CellTextType.NUMBER) {
+            TreeNode tree = parse(text);
+            Object expectedValue = tree.calculate((row, column) -> 0.0);
+            Assertions.assertEquals(expectedValue, CellTextType.getNumberValue(text));
+        } else if (cellTextType != CellTextType.FORMULA) {
+            Assertions.assertThrows(ParserException.class, () -> parse(text));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package jetbrains.formulas.parser;
 import jetbrains.exceptions.ParserException;
 import jetbrains.formulas.parser.LexicalAnalyzer.Token;
 import jetbrains.formulas.parser.LexicalAnalyzer.TokenType;
+import jetbrains.formulas.parser.LexicalAnalyzer.TokenizerMode;
 import jetbrains.table.structures.CellDiapason;
 import jetbrains.table.structures.CellPosition;
 import org.junit.jupiter.api.Assertions;
@@ -105,6 +106,32 @@ class LexicalAnalyzerTest {
         Assertions.assertEquals(expectedTokens, actualTokens);
     }
 
+    @ParameterizedTest
+    @MethodSource("validTokensSource")
+    public void getTokensFromValidTextRegexTest(String text, List<LexicalAnalyzer.Token> expectedTokens) throws ParserException {
+        text = "\n \t" + text + "\n\t ";
+        List<LexicalAnalyzer.Token> actualTokens = LexicalAnalyzer.getTokensFromText(text, TokenizerMode.REGEX);
+        Assertions.assertEquals(expectedTokens, actualTokens);
+    }
+
+    private static Stream<Arguments> sameTokensSource() {
+        return Stream.of(
+                Arguments.of("=sum(A1:B2, $C$3, D$4:$E5, 2.5, 3.) / -pow(AB12, 2)"),
+                Arguments.of("=max(A1, A2, A3, A4, A5, A6, A7, A8, A9, A10, A11, A12) * 1.5 - min(ZZ100:AAA1)"),
+                Arguments.of("= cor( A1:A10 ,B1:B10 )+ln( exp( 1 ) )"),
+                Arguments.of("=1 +\t2\n*\r3"),
+                Arguments.of("-12.75")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("sameTokensSource")
+    public void scannerAndRegexSameTokensTest(String text) throws ParserException {
+        List<LexicalAnalyzer.Token> regexTokens = LexicalAnalyzer.getTokensFromText(text, TokenizerMode.REGEX);
+        List<LexicalAnalyzer.Token> scannerTokens = LexicalAnalyzer.getTokensFromText(text, TokenizerMode.SCANNER);
+        Assertions.assertEquals(regexTokens, scannerTokens);
+    }
+
     private static Stream<Arguments> invalidTokensSource() {
         return Stream.of(
                 Arguments.of("~"),
@@ -129,6 +156,12 @@ class LexicalAnalyzerTest {
         Assertions.assertThrows(ParserException.class, () -> LexicalAnalyzer.getTokensFromText(text));
     }
 
+    @ParameterizedTest
+    @MethodSource("invalidTokensSource")
+    public void getTokensFromInvalidTextRegexTest(String text) {
+        Assertions.assertThrows(ParserException.class, () -> LexicalAnalyzer.getTokensFromText(text, TokenizerMode.REGEX));
+    }
+
     private static Stream<Arguments> getFormulaWithShiftedCellsSource() {
         return Stream.of(
                 Arguments.of("=A1", new CellPosition(1, 1), new CellPosition(1, 1), "=A1"),
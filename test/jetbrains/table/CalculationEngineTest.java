@@ -0,0 +1,137 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class CalculationEngineTest {
+    private static final int ROWS = 2000;
+    private static final int COLUMNS = 3;
+    private static final int EDITS = 20;
+
+    @Test
+    public void supersededEditsTest() {
+        ExcelTable asyncTable = getExcelTable();
+        for (int edit = 0; edit < EDITS; edit++) {
+            asyncTable.getCalculationEngine().updateTextsLater(Map.of(new CellPosition(0, 1), "" + edit));
+        }
+        asyncTable.setTextsAt(Map.of());
+
+        ExcelTable syncTable = getExcelTable();
+        syncTable.setTextAt(0, 0, "" + (EDITS - 1));
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 1; column <= COLUMNS; column++) {
+                Assertions.assertEquals(syncTable.getValueAt(row, column), asyncTable.getValueAt(row, column));
+            }
+        }
+        Assertions.assertEquals("" + (EDITS - 1), asyncTable.getTextAt(0, 0));
+    }
+
+    @Test
+    public void invalidFormulaLaterTest() {
+        ExcelTable table = getExcelTable();
+        long version = table.getCalculationEngine().updateTextsLater(Map.of(new CellPosition(5, 2), "=1+"));
+        table.setTextsAt(Map.of());
+        Assertions.assertTrue(version > 0);
+        Assertions.assertEquals("=1+", table.getTextAt(5, 1));
+        Assertions.assertNotEquals("=1+", table.getValueAt(5, 2));
+        Assertions.assertEquals(table.getValueAt(4, 3), table.getValueAt(5, 3));
+    }
+
+    @Test
+    public void lazyCalculationTest() {
+        ExcelTable lazyTable = getExcelTable();
+        lazyTable.setCalculationMode(CalculationMode.LAZY);
+        lazyTable.setTextAt(0, 0, "5");
+        Assertions.assertEquals(ROWS + 1, lazyTable.getCalculationEngine().getDirtyCountAndWait());
+
+        ExcelTable automaticTable = getExcelTable();
+        automaticTable.setTextAt(0, 0, "5");
+        Assertions.assertTrue(lazyTable.getCalculationEngine().isDirtyAndWait(new CellPosition(9, 3)));
+        lazyTable.getValueAt(9, 3);
+        lazyTable.setTextsAt(Map.of());
+        Assertions.assertEquals(automaticTable.getValueAt(9, 3), lazyTable.getValueAt(9, 3));
+        Assertions.assertEquals(ROWS - 10, lazyTable.getCalculationEngine().getDirtyCountAndWait());
+        Assertions.assertEquals(automaticTable.getValueAt(0, 2), lazyTable.getValueAt(0, 2));
+
+        lazyTable.calculateAll();
+        Assertions.assertEquals(0, lazyTable.getCalculationEngine().getDirtyCountAndWait());
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 1; column <= COLUMNS; column++) {
+                Assertions.assertEquals(automaticTable.getValueAt(row, column), lazyTable.getValueAt(row, column));
+            }
+        }
+    }
+
+    @Test
+    public void manualCalculationTest() {
+        ExcelTable manualTable = getExcelTable();
+        manualTable.setCalculationMode(CalculationMode.MANUAL);
+        ExcelTable automaticTable = getExcelTable();
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < ROWS; row++) {
+            cellPositionToText.put(new CellPosition(row, 0), "" + row % 5);
+        }
+        Object oldValue = manualTable.getValueAt(ROWS - 1, 3);
+        manualTable.setTextsAt(cellPositionToText);
+        automaticTable.setTextsAt(cellPositionToText);
+        Assertions.assertEquals(2 * ROWS, manualTable.getStaleCellCount());
+        Assertions.assertEquals(oldValue, manualTable.getValueAt(ROWS - 1, 3));
+        Assertions.assertEquals(2 * ROWS, manualTable.getCalculationEngine().getDirtyCountAndWait());
+
+        manualTable.calculateAll();
+        Assertions.assertEquals(0, manualTable.getStaleCellCount());
+        Assertions.assertEquals(0, manualTable.getCalculationEngine().getDirtyCountAndWait());
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 1; column <= COLUMNS; column++) {
+                Assertions.assertEquals(automaticTable.getValueAt(row, column), manualTable.getValueAt(row, column));
+            }
+        }
+    }
+
+    @Test
+    public void automaticExceptRangesTest() {
+        ExcelTable table = TableGenerator.getExcelTable(10, 4);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < 10; row++) {
+            cellPositionToText.put(new CellPosition(row, 0), "" + row);
+        }
+        cellPositionToText.put(new CellPosition(0, 1), "=sum(A1:A10)");
+        cellPositionToText.put(new CellPosition(0, 2), "=B1 + 1");
+        cellPositionToText.put(new CellPosition(0, 3), "=A1 * 2");
+        table.setTextsAt(cellPositionToText);
+        table.setCalculationMode(CalculationMode.AUTOMATIC_EXCEPT_RANGES);
+
+        table.setTextAt(0, 0, "100");
+        Assertions.assertEquals("200.0", table.getValueAt(0, 4));
+        Assertions.assertEquals("45.0", table.getValueAt(0, 2));
+        Assertions.assertEquals("46.0", table.getValueAt(0, 3));
+        Assertions.assertEquals(2, table.getStaleCellCount());
+
+        table.calculateAll();
+        Assertions.assertEquals("145.0", table.getValueAt(0, 2));
+        Assertions.assertEquals("146.0", table.getValueAt(0, 3));
+        Assertions.assertEquals(0, table.getStaleCellCount());
+
+        table.setTextAt(0, 1, "=A1 + 1");
+        table.setTextAt(0, 0, "200");
+        Assertions.assertEquals("201.0", table.getValueAt(0, 2));
+        Assertions.assertEquals("202.0", table.getValueAt(0, 3));
+        Assertions.assertEquals(0, table.getStaleCellCount());
+    }
+
+    private static ExcelTable getExcelTable() {
+        ExcelTable table = TableGenerator.getExcelTable(ROWS, COLUMNS);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < ROWS; row++) {
+            cellPositionToText.put(new CellPosition(row, 0), "" + row % 7);
+            cellPositionToText.put(new CellPosition(row, 1), "=A" + (row + 1) + " * 2 + 1");
+            cellPositionToText.put(new CellPosition(row, 2), row == 0 ? "=B1" : "=B" + (row + 1) + " + C" + row);
+        }
+        table.setTextsAt(cellPositionToText);
+        return table;
+    }
+}
@@ -0,0 +1,95 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellElement;
+import jetbrains.table.structures.CellPosition;
+import jetbrains.table.structures.CellStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+class ExcelTableModelTest {
+    private static final int ROWS = 10000;
+    private static final int COLUMNS = 3;
+
+    private ExcelTableModel tableModel;
+    private List<TableModelEvent> tableModelEvents;
+
+    @BeforeEach
+    void setUp() {
+        tableModel = new ExcelTableModel(ROWS, COLUMNS);
+        tableModelEvents = new ArrayList<>();
+        tableModel.addTableModelListener(tableModelEvents::add);
+    }
+
+    @Test
+    public void oneColumnUpdateTest() {
+        tableModel.updateValueAt(7, 2);
+        tableModel.updateValueAt(3, 2);
+        tableModel.updateValueAt(12, 2);
+        tableModel.fireUpdatedValues();
+        Assertions.assertEquals(1, tableModelEvents.size());
+        assertEvent(3, 12, 2, tableModelEvents.get(0));
+    }
+
+    @Test
+    public void manyColumnsUpdateTest() {
+        tableModel.updateValueAt(7, 2);
+        tableModel.updateValueAt(9, 1);
+        tableModel.fireUpdatedValues();
+        tableModel.fireUpdatedValues();
+        Assertions.assertEquals(1, tableModelEvents.size());
+        assertEvent(7, 9, TableModelEvent.ALL_COLUMNS, tableModelEvents.get(0));
+    }
+
+    @Test
+    public void allRowsUpdateTest() {
+        for (int row = 0; row < ExcelTableModel.MIN_CELLS_TO_UPDATE_ALL_ROWS; row++) {
+            tableModel.updateValueAt(row, 1);
+        }
+        tableModel.fireUpdatedValues();
+        Assertions.assertEquals(1, tableModelEvents.size());
+        assertEvent(0, ROWS - 1, TableModelEvent.ALL_COLUMNS, tableModelEvents.get(0));
+    }
+
+    @Test
+    public void virtualCellsTest() {
+        Assertions.assertEquals(COLUMNS + 1, tableModel.getColumnCount());
+        Assertions.assertEquals("C", tableModel.getColumnName(3));
+        Assertions.assertEquals("10000", tableModel.getValueAt(ROWS - 1, 0));
+        Assertions.assertEquals("", tableModel.getValueAt(5, 1));
+        tableModel.setValueAt("=A1", 5, 1);
+        Assertions.assertEquals("=A1", tableModel.getValueAt(5, 1));
+        tableModel.setValueAt("", 5, 1);
+        Assertions.assertEquals("", tableModel.getValueAt(5, 1));
+        Assertions.assertEquals(2, tableModelEvents.size());
+    }
+
+    @Test
+    public void cellSourceTest() {
+        CellStore cellStore = new CellStore();
+        cellStore.put(5, 0, new CellElement(new CellPosition(5, 1), "", null));
+        cellStore.setValue(5, 0, 2.0);
+        tableModel.setCellSource(cellStore.freeze());
+        Assertions.assertEquals("2.0", tableModel.getValueAt(5, 1));
+        Assertions.assertEquals("", tableModel.getValueAt(6, 1));
+
+        tableModel.setValueAt("=A1", 5, 1);
+        Assertions.assertEquals("=A1", tableModel.getValueAt(5, 1));
+        tableModel.removePendingValueAt(5, 1);
+        tableModel.fireUpdatedValues();
+        Assertions.assertEquals("2.0", tableModel.getValueAt(5, 1));
+        Assertions.assertEquals(2, tableModelEvents.size());
+        assertEvent(5, 5, 1, tableModelEvents.get(1));
+    }
+
+    private static void assertEvent(int firstRow, int lastRow, int column, TableModelEvent tableModelEvent) {
+        Assertions.assertEquals(TableModelEvent.UPDATE, tableModelEvent.getType());
+        Assertions.assertEquals(firstRow, tableModelEvent.getFirstRow());
+        Assertions.assertEquals(lastRow, tableModelEvent.getLastRow());
+        Assertions.assertEquals(column, tableModelEvent.getColumn());
+    }
+}
@@ -0,0 +1,79 @@
+package jetbrains.table;
+
+import jetbrains.table.structures.CellPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class FormulaRecalculatorTest {
+    private static final int ROWS = 2000;
+    private static final int COLUMNS = 4;
+
+    @Test
+    public void parallelRecalculationTest() {
+        ExcelTable serialTable = getExcelTable(new ForkJoinPool(1));
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        ExcelTable parallelTable = getExcelTable(forkJoinPool);
+        for (int row = 0; row < ROWS; row += 97) {
+            serialTable.setTextAt(row, 0, "" + (row * 0.7 - 3));
+            parallelTable.setTextAt(row, 0, "" + (row * 0.7 - 3));
+        }
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                Assertions.assertEquals(serialTable.getValueAt(row, column + 1), parallelTable.getValueAt(row, column + 1));
+            }
+        }
+        Assertions.assertEquals("=1/0", parallelTable.getTextAt(ROWS - 1, 3));
+        forkJoinPool.shutdown();
+    }
+
+    @Test
+    public void parallelTallRangeSumTest() {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        ExcelTable serialTable = getTallRangeTable(new ForkJoinPool(1));
+        ExcelTable parallelTable = getTallRangeTable(forkJoinPool);
+        String sumValue = serialTable.getValueAt(0, 2).toString();
+        for (int row = 0; row < ROWS; row++) {
+            Assertions.assertEquals(sumValue, serialTable.getValueAt(row, 2));
+            Assertions.assertEquals(sumValue, parallelTable.getValueAt(row, 2));
+            Assertions.assertEquals(serialTable.getValueAt(row, 3), parallelTable.getValueAt(row, 3));
+        }
+        forkJoinPool.shutdown();
+    }
+
+    private static ExcelTable getTallRangeTable(ForkJoinPool forkJoinPool) {
+        ExcelTable table = TableGenerator.getExcelTable(ROWS, COLUMNS);
+        table.setRecalculationPool(forkJoinPool);
+        Random random = new Random(0);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < ROWS; row++) {
+            cellPositionToText.put(new CellPosition(row, 0), "" + random.nextGaussian() * 1e6);
+        }
+        table.setTextsAt(cellPositionToText);
+        cellPositionToText.clear();
+        for (int row = 0; row < ROWS; row++) {
+            cellPositionToText.put(new CellPosition(row, 1), "=sum(A1:A1000)");
+            cellPositionToText.put(new CellPosition(row, 2), "=mean(A" + (row % 1000 + 1) + ":A" + (row % 1000 + 100) + ")");
+        }
+        table.setTextsAt(cellPositionToText);
+        return table;
+    }
+
+    private static ExcelTable getExcelTable(ForkJoinPool forkJoinPool) {
+        ExcelTable table = TableGenerator.getExcelTable(ROWS, COLUMNS);
+        table.setRecalculationPool(forkJoinPool);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < ROWS; row++) {
+            cellPositionToText.put(new CellPosition(row, 0), "" + (row % 13) / 7.0);
+            cellPositionToText.put(new CellPosition(row, 1), "=A" + (row + 1) + " * 1.1 + sin(A" + (row + 1) + ")");
+            cellPositionToText.put(new CellPosition(row, 2), "=std(B1:B" + ROWS + ") + B" + (row + 1));
+            cellPositionToText.put(new CellPosition(row, 3), row == ROWS - 1 ? "=1/0" : "=C" + (row + 1) + " / (A" + (row + 1) + " + 1)");
+        }
+        table.setTextsAt(cellPositionToText);
+        return table;
+    }
+}
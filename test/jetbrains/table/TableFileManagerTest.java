@@ -0,0 +1,271 @@
+package jetbrains.table;
+
+import jetbrains.exceptions.TableFileManagerException;
+import jetbrains.table.structures.CellPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+class TableFileManagerTest {
+    @Test
+    public void saveAndOpenTest(@TempDir Path directory) throws TableFileManagerException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        cellPositionToText.put(new CellPosition(0, 0), "1");
+        cellPositionToText.put(new CellPosition(0, 1), "=A1 * 2");
+        cellPositionToText.put(new CellPosition(3, 4), "12,3,4:text.");
+        cellPositionToText.put(new CellPosition(7, 2), "line\nnext line");
+        cellPositionToText.put(new CellPosition(99, 0), "=sum(A1:A99)");
+        table.setTextsAt(cellPositionToText);
+
+        File file = directory.resolve("table").toFile();
+        TableFileManager.saveTableToFile(table, file);
+        ExcelTable tableFromFile = TableFileManager.getTableFromFile(new File(file.getPath() + ".table"));
+
+        Assertions.assertEquals(table.getRowCount(), tableFromFile.getRowCount());
+        Assertions.assertEquals(table.getColumnCount(), tableFromFile.getColumnCount());
+        Assertions.assertEquals(table.getTextsAt(), tableFromFile.getTextsAt());
+        Assertions.assertEquals("2.0", tableFromFile.getValueAt(0, 2));
+        Assertions.assertEquals("1.0", tableFromFile.getValueAt(99, 1));
+    }
+
+    @Test
+    public void openContentTest(@TempDir Path directory) throws Exception {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        table.setTextsAt(Map.of(new CellPosition(0, 0), "1", new CellPosition(0, 1), "=A1 * 2"));
+        File file = directory.resolve("table").toFile();
+        TableFileManager.saveTableToFile(table, file);
+        TableFileManager.closeTableJournal(table);
+
+        ExcelTableContent tableContent = TableFileManager.getTableContentFromFile(new File(file.getPath() + ".table"),
+                TableFileProgress.getEmptyProgress());
+        Assertions.assertEquals(2.0, tableContent.getCalculationEngine().getValueAndWait(new CellPosition(0, 2)));
+        tableContent.loadTextsAt(Map.of(new CellPosition(0, 0), "4"));
+
+        List<ExcelTable> tablesFromFile = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> tablesFromFile.add(new ExcelTable(tableContent)));
+        ExcelTable tableFromFile = tablesFromFile.get(0);
+        Assertions.assertEquals("4.0", tableFromFile.getValueAt(0, 1));
+        Assertions.assertEquals("8.0", tableFromFile.getValueAt(0, 2));
+        Assertions.assertTrue(TableFileManager.hasUnsavedChanges(tableFromFile));
+        TableFileManager.closeTableJournal(tableFromFile);
+    }
+
+    @Test
+    public void saveAndOpenMappedFileTest(@TempDir Path directory) throws TableFileManagerException {
+        ExcelTable table = TableGenerator.getExcelTable(1000, 30);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < 1000; row += 3) {
+            cellPositionToText.put(new CellPosition(row, 0), row + "");
+            cellPositionToText.put(new CellPosition(row, 29), "text " + row);
+        }
+        cellPositionToText.put(new CellPosition(0, 1), "=A1 + A4");
+        cellPositionToText.put(new CellPosition(7, 2), "\u0441\u0442\u0440\u043e\u043a\u0430\nnext line");
+        cellPositionToText.put(new CellPosition(999, 0), "=sum(A1:A999)");
+        table.setTextsAt(cellPositionToText);
+
+        File file = directory.resolve("table").toFile();
+        TableFileManager.saveTableToMappedFile(table, file);
+        ExcelTable tableFromFile = TableFileManager.getTableFromFile(new File(file.getPath() + ".table"));
+
+        Assertions.assertEquals(table.getRowCount(), tableFromFile.getRowCount());
+        Assertions.assertEquals(table.getColumnCount(), tableFromFile.getColumnCount());
+        Assertions.assertEquals(table.getTextsAt(), tableFromFile.getTextsAt());
+        Assertions.assertEquals(0, tableFromFile.getCalculationEngine().getTileCountAndWait());
+        Assertions.assertEquals("996.0", tableFromFile.getValueAt(996, 1));
+        Assertions.assertEquals("text 3", tableFromFile.getValueAt(3, 30));
+        Assertions.assertEquals("3.0", tableFromFile.getValueAt(0, 2));
+        Assertions.assertEquals("165834.0", tableFromFile.getValueAt(999, 1));
+
+        tableFromFile.setTextAt(3, 0, "10");
+        tableFromFile.setTextAt(6, 0, "");
+        Assertions.assertEquals("10.0", tableFromFile.getValueAt(0, 2));
+        Assertions.assertEquals("165835.0", tableFromFile.getValueAt(999, 1));
+        Assertions.assertEquals("", tableFromFile.getValueAt(6, 1));
+        Assertions.assertEquals("", tableFromFile.getTextAt(6, 0));
+
+        TableFileManager.saveTableToMappedFile(tableFromFile, file);
+        Assertions.assertEquals(tableFromFile.getTextsAt(),
+                TableFileManager.getTableFromFile(new File(file.getPath() + ".table")).getTextsAt());
+        Assertions.assertEquals("text 999", tableFromFile.getTextAt(999, 29));
+    }
+
+    @Test
+    public void savedValuesAndDependenciesTest(@TempDir Path directory) throws TableFileManagerException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 10);
+        table.setTextsAt(Map.of(
+                new CellPosition(0, 0), "2",
+                new CellPosition(1, 0), "=A1 * 3",
+                new CellPosition(2, 0), "=sum(A1:A2)",
+                new CellPosition(3, 0), "=A1 +",
+                new CellPosition(4, 0), "=A5",
+                new CellPosition(50, 5), "=B51 / 2"
+        ));
+        table.setCalculationMode(CalculationMode.MANUAL);
+        table.setTextAt(50, 6, "=A3 - 1");
+
+        File file = directory.resolve("table").toFile();
+        TableFileManager.saveTableToMappedFile(table, file);
+        ExcelTable tableFromFile = TableFileManager.getTableFromFile(new File(file.getPath() + ".table"));
+
+        for (int row = 0; row < 5; row++) {
+            Assertions.assertEquals(table.getValueAt(row, 1), tableFromFile.getValueAt(row, 1));
+        }
+        Assertions.assertEquals("7.0", tableFromFile.getValueAt(50, 7));
+        Assertions.assertEquals(1, tableFromFile.getCalculationEngine().getTileCountAndWait());
+
+        tableFromFile.setTextAt(0, 0, "4");
+        Assertions.assertEquals("12.0", tableFromFile.getValueAt(1, 1));
+        Assertions.assertEquals("16.0", tableFromFile.getValueAt(2, 1));
+        Assertions.assertEquals("15.0", tableFromFile.getValueAt(50, 7));
+        Assertions.assertEquals(table.getValueAt(3, 1), tableFromFile.getValueAt(3, 1));
+        Assertions.assertEquals(table.getValueAt(4, 1), tableFromFile.getValueAt(4, 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void progressTest(boolean isMappedFile, @TempDir Path directory) throws TableFileManagerException {
+        ExcelTable table = TableGenerator.getExcelTable(1000, 5);
+        Map<CellPosition, String> cellPositionToText = new LinkedHashMap<>();
+        for (int row = 0; row < 1000; row++) {
+            cellPositionToText.put(new CellPosition(row, 0), "text " + row);
+        }
+        table.setTextsAt(cellPositionToText);
+
+        File file = directory.resolve("table").toFile();
+        List<Integer> saveProgresses = new ArrayList<>();
+        if (isMappedFile) {
+            TableFileManager.saveTableToMappedFile(table, file, new TableFileProgress(saveProgresses::add));
+        } else {
+            TableFileManager.saveTableToFile(table, file, new TableFileProgress(saveProgresses::add));
+        }
+        List<Integer> openProgresses = new ArrayList<>();
+        ExcelTable tableFromFile = TableFileManager.getTableFromFile(new File(file.getPath() + ".table"),
+                new TableFileProgress(openProgresses::add));
+
+        Assertions.assertEquals(table.getTextsAt(), tableFromFile.getTextsAt());
+        for (List<Integer> progresses : List.of(saveProgresses, openProgresses)) {
+            Assertions.assertEquals(TableFileProgress.MAX_PROGRESS, progresses.get(progresses.size() - 1));
+            for (int progressId = 1; progressId < progresses.size(); progressId++) {
+                Assertions.assertTrue(progresses.get(progressId - 1) < progresses.get(progressId));
+            }
+        }
+        TableFileManager.closeTableJournal(table);
+        TableFileManager.closeTableJournal(tableFromFile);
+    }
+
+    @Test
+    public void cancelledSaveTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        table.setTextAt(0, 0, "saved");
+        File file = directory.resolve("table").toFile();
+        File otherFile = directory.resolve("other").toFile();
+        TableFileManager.saveTableToFile(table, file);
+        TableJournal tableJournal = table.getTableJournal();
+        table.setTextAt(1, 0, "journaled");
+
+        List<TableFileProgress> savingProgresses = new ArrayList<>();
+        savingProgresses.add(new TableFileProgress(progress -> {
+            table.setTextAt(3, 0, "edited while saving");
+            savingProgresses.get(0).cancel();
+        }));
+        Assertions.assertThrows(CancellationException.class,
+                () -> TableFileManager.saveTableToMappedFile(table, otherFile, savingProgresses.get(0)));
+        Assertions.assertSame(tableJournal, table.getTableJournal());
+        try (Stream<Path> paths = Files.list(directory)) {
+            Assertions.assertEquals(List.of("table.table", "table.table.journal"),
+                    paths.map(path -> path.getFileName().toString()).sorted().toList());
+        }
+
+        table.setTextAt(2, 0, "after cancel");
+        table.getTableJournal().close();
+        ExcelTable tableFromFile = TableFileManager.getTableFromFile(new File(file.getPath() + ".table"));
+        Assertions.assertEquals(table.getTextsAt(), tableFromFile.getTextsAt());
+        Assertions.assertEquals("edited while saving", tableFromFile.getTextAt(3, 0));
+        TableFileManager.closeTableJournal(tableFromFile);
+    }
+
+    @Test
+    public void cancelledOpenTest(@TempDir Path directory) throws TableFileManagerException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        table.setTextAt(0, 0, "text");
+        File file = directory.resolve("table").toFile();
+        TableFileManager.saveTableToFile(table, file);
+        TableFileManager.closeTableJournal(table);
+
+        TableFileProgress cancelledProgress = TableFileProgress.getEmptyProgress();
+        cancelledProgress.cancel();
+        Assertions.assertThrows(CancellationException.class,
+                () -> TableFileManager.getTableFromFile(new File(file.getPath() + ".table"), cancelledProgress));
+    }
+
+    @Test
+    public void cellBatchesTest() throws IOException, TableFileManagerException {
+        TableFileReader tableFileReader = new TableFileReader(new StringReader("0,0,2:1 0,1,3:=A11,0,2:ab1,1,0:.\n"));
+        List<Map<CellPosition, String>> cellBatches = new ArrayList<>();
+        tableFileReader.readCells(2, 2, 3, cellBatches::add);
+        Assertions.assertEquals(List.of(
+                Map.of(new CellPosition(0, 0), "1 ", new CellPosition(0, 1), "=A1", new CellPosition(1, 0), "ab"),
+                Map.of(new CellPosition(1, 1), "")
+        ), cellBatches);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "2,2", "2,2;", "x2,2;.", "2,2;0,0,5:abc.", "2,2;2,0,1:a.", "2,2;0,2,1:a.",
+            "2,2;0,0,1:a", "2,2;0,0,1:a.x", "2,2;0,0,1:a;.", "2,2;0,-1,1:a.", "2,99999999999;."})
+    public void invalidFileTest(String tableText) {
+        TableFileManagerException exception = Assertions.assertThrows(TableFileManagerException.class,
+                () -> TableFileManager.getTableFromReader(new StringReader(tableText)));
+        Assertions.assertEquals(TableFileReader.INVALID_FILE_MESSAGE, exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 3, 4, 5})
+    public void corruptMappedFileTest(int corruption, @TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 11);
+        table.setTextsAt(Map.of(
+                new CellPosition(0, 0), "1",
+                new CellPosition(0, 8), "text",
+                new CellPosition(50, 4), "=A1 + 1"
+        ));
+        File file = directory.resolve("table").toFile();
+        TableFileManager.saveTableToMappedFile(table, file);
+        Path path = Path.of(file.getPath() + ".table");
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        int tileRowCount = buffer.getInt(16);
+        int tileCount = (int) buffer.getLong(24);
+        int tileRowIndexOffset = (int) buffer.getLong(40);
+        int tileColumnsOffset = tileRowIndexOffset + 8 * (tileRowCount + 1);
+        int tileOffsetsOffset = (tileColumnsOffset + 4 * tileCount + 7) & ~7;
+        switch (corruption) {
+            case 0 -> buffer.putLong(tileOffsetsOffset, buffer.capacity() + 8L);
+            case 1 -> buffer.putLong(tileOffsetsOffset, 3);
+            case 2 -> buffer.putLong(tileOffsetsOffset + 8, buffer.getLong(tileOffsetsOffset));
+            case 3 -> buffer.putInt(tileColumnsOffset, 3);
+            case 4 -> buffer.putInt(tileColumnsOffset + 4, buffer.getInt(tileColumnsOffset));
+            case 5 -> buffer.putLong(tileRowIndexOffset + 8 * tileRowCount, tileCount + 1);
+        }
+        Files.write(path, buffer.array());
+
+        TableFileManagerException exception = Assertions.assertThrows(TableFileManagerException.class,
+                () -> TableFileManager.getTableFromFile(path.toFile()));
+        Assertions.assertEquals(TableFileReader.INVALID_FILE_MESSAGE, exception.getMessage());
+    }
+}
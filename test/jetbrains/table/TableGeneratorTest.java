@@ -21,7 +21,8 @@ class TableGeneratorTest {
                 Arguments.of(3, 5),
                 Arguments.of(5, 3),
                 Arguments.of(10, 10),
-                Arguments.of(50, 100)
+                Arguments.of(50, 100),
+                Arguments.of(1_000_000, 50)
         );
     }
 
@@ -0,0 +1,191 @@
+package jetbrains.table;
+
+import jetbrains.exceptions.TableFileManagerException;
+import jetbrains.table.structures.CellPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+class TableJournalTest {
+    @Test
+    public void replayTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        table.setTextsAt(Map.of(new CellPosition(0, 0), "1", new CellPosition(0, 1), "=A1 * 2"));
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToMappedFile(table, file);
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(table));
+
+        table.setTextAt(0, 0, "5");
+        table.setTextAt(3, 2, "text");
+        table.setTextAt(3, 2, "new text");
+        Assertions.assertTrue(TableFileManager.hasUnsavedChanges(table));
+        table.getTableJournal().close();
+
+        ExcelTable recoveredTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertTrue(TableFileManager.hasUnsavedChanges(recoveredTable));
+        Assertions.assertEquals(table.getTextsAt(), recoveredTable.getTextsAt());
+        Assertions.assertEquals("10.0", recoveredTable.getValueAt(0, 2));
+
+        recoveredTable.setTextAt(4, 4, "=B1 + 1");
+        TableFileManager.saveTableToMappedFile(recoveredTable, file);
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(recoveredTable));
+        TableFileManager.closeTableJournal(recoveredTable);
+        Assertions.assertTrue(Files.exists(TableJournal.getJournalPath(tableFile.toPath())));
+
+        ExcelTable reopenedTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(reopenedTable));
+        Assertions.assertEquals("11.0", reopenedTable.getValueAt(4, 5));
+        Assertions.assertEquals("new text", reopenedTable.getTextAt(3, 2));
+        TableFileManager.closeTableJournal(reopenedTable);
+    }
+
+    @Test
+    public void discardTest(@TempDir Path directory) throws TableFileManagerException {
+        ExcelTable table = TableGenerator.getExcelTable(10, 5);
+        table.setTextAt(0, 0, "saved");
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToFile(table, file);
+        table.setTextAt(0, 0, "discarded");
+        table.setTextAt(1, 1, "discarded");
+        TableFileManager.closeTableJournal(table);
+        Assertions.assertFalse(Files.exists(TableJournal.getJournalPath(tableFile.toPath())));
+
+        ExcelTable reopenedTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(reopenedTable));
+        Assertions.assertEquals(Map.of(new CellPosition(0, 0), "saved"), reopenedTable.getTextsAt());
+        TableFileManager.closeTableJournal(reopenedTable);
+    }
+
+    @Test
+    public void incrementalSaveTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToFile(table, file);
+        for (int row = 0; row < 100; row++) {
+            table.setTextAt(row, 0, row + "");
+        }
+        TableJournal tableJournal = table.getTableJournal();
+        long journalSize = tableJournal.getSize();
+        Assertions.assertTrue(journalSize > 0);
+
+        TableFileManager.saveTableToFile(table, file);
+        Assertions.assertSame(tableJournal, table.getTableJournal());
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(table));
+        Assertions.assertTrue(tableJournal.getSize() > journalSize);
+        Assertions.assertEquals("100,5;.", Files.readString(tableFile.toPath()));
+
+        table.setTextAt(0, 1, "discarded");
+        Assertions.assertTrue(TableFileManager.hasUnsavedChanges(table));
+        TableFileManager.closeTableJournal(table);
+        Assertions.assertTrue(Files.exists(tableJournal.getPath()));
+
+        ExcelTable reopenedTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(reopenedTable));
+        Assertions.assertEquals("", reopenedTable.getTextAt(0, 1));
+        Assertions.assertEquals("99", reopenedTable.getTextAt(99, 0));
+        Assertions.assertEquals(100, reopenedTable.getTextsAt().size());
+        TableFileManager.closeTableJournal(reopenedTable);
+    }
+
+    @Test
+    public void saveInOtherFormatWritesSnapshotTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToFile(table, file);
+        for (int row = 0; row < 100; row++) {
+            table.setTextAt(row, 0, row + "");
+        }
+        TableJournal tableJournal = table.getTableJournal();
+
+        TableFileManager.saveTableToMappedFile(table, file);
+        Assertions.assertSame(tableJournal, table.getTableJournal());
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(table));
+        Assertions.assertEquals(0, tableJournal.getSize());
+        Assertions.assertEquals(0, Files.size(tableJournal.getPath()));
+        TableFileManager.closeTableJournal(table);
+        Assertions.assertFalse(Files.exists(tableJournal.getPath()));
+
+        ExcelTable reopenedTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertEquals(table.getTextsAt(), reopenedTable.getTextsAt());
+        TableFileManager.closeTableJournal(reopenedTable);
+    }
+
+    @Test
+    public void compactionTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(100, 5);
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToFile(table, file);
+        for (int edit = 0; edit < 100; edit++) {
+            table.setTextAt(edit % 10, 0, edit + "");
+        }
+        TableJournal tableJournal = table.getTableJournal();
+        Assertions.assertTrue(tableJournal.getSize() > 0);
+
+        tableJournal.compact();
+        Assertions.assertEquals(0, tableJournal.getSize());
+        Assertions.assertEquals(0, Files.size(tableJournal.getPath()));
+        Assertions.assertTrue(TableFileManager.hasUnsavedChanges(table));
+        Assertions.assertTrue(Files.readString(tableFile.toPath()).contains("9,0,2:99"));
+        tableJournal.close();
+
+        ExcelTable recoveredTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertEquals(table.getTextsAt(), recoveredTable.getTextsAt());
+        Assertions.assertEquals("99", recoveredTable.getTextAt(9, 0));
+        TableFileManager.closeTableJournal(recoveredTable);
+    }
+
+    @Test
+    public void compactionFailureTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(10, 5);
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToFile(table, file);
+        table.setTextAt(1, 1, "edited");
+        TableJournal tableJournal = table.getTableJournal();
+        Path temporaryPath = Path.of(tableFile.getPath() + ".tmp");
+        Files.createDirectory(temporaryPath);
+        tableJournal.compact();
+
+        Assertions.assertThrows(TableFileManagerException.class, () -> TableFileManager.saveTableToFile(table, file));
+        Assertions.assertEquals("10,5;.", Files.readString(tableFile.toPath()));
+        Assertions.assertTrue(TableFileManager.hasUnsavedChanges(table));
+
+        Files.deleteIfExists(temporaryPath);
+        TableFileManager.saveTableToFile(table, file);
+        Assertions.assertFalse(TableFileManager.hasUnsavedChanges(table));
+        TableFileManager.closeTableJournal(table);
+        ExcelTable savedTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertEquals(Map.of(new CellPosition(1, 1), "edited"), savedTable.getTextsAt());
+        TableFileManager.closeTableJournal(savedTable);
+    }
+
+    @Test
+    public void tornRecordTest(@TempDir Path directory) throws TableFileManagerException, IOException {
+        ExcelTable table = TableGenerator.getExcelTable(10, 5);
+        File file = directory.resolve("table").toFile();
+        File tableFile = new File(file.getPath() + ".table");
+        TableFileManager.saveTableToFile(table, file);
+        table.setTextAt(1, 1, "kept");
+        table.getTableJournal().close();
+        Path journalPath = TableJournal.getJournalPath(tableFile.toPath());
+        long journalSize = Files.size(journalPath);
+        Files.write(journalPath, new byte[]{0, 0, 0, 20, 1, 2, 3, 4, 0, 0}, StandardOpenOption.APPEND);
+
+        ExcelTable recoveredTable = TableFileManager.getTableFromFile(tableFile);
+        Assertions.assertEquals(Map.of(new CellPosition(1, 1), "kept"), recoveredTable.getTextsAt());
+        Assertions.assertEquals(journalSize, Files.size(journalPath));
+        TableFileManager.closeTableJournal(recoveredTable);
+    }
+}
@@ -0,0 +1,232 @@
+package jetbrains.table.structures;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+class CellStoreTest {
+    private static final int ROWS = 100_000;
+    private static final int COLUMNS = 50;
+
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(0);
+        CellStore cellStore = new CellStore();
+        Map<CellPosition, CellElement> expectedCells = new HashMap<>();
+        for (int operation = 0; operation < 100_000; operation++) {
+            int row = random.nextInt(random.nextBoolean() ? 300 : ROWS);
+            int column = random.nextInt(COLUMNS);
+            CellPosition cellPosition = new CellPosition(row, column);
+            if (random.nextInt(3) == 0) {
+                cellStore.remove(row, column);
+                expectedCells.remove(cellPosition);
+            } else if (random.nextBoolean()) {
+                CellElement cell = new CellElement(cellPosition, "", null);
+                cellStore.put(row, column, cell);
+                expectedCells.put(cellPosition, cell);
+            } else {
+                Assertions.assertSame(expectedCells.get(cellPosition), cellStore.get(row, column));
+            }
+        }
+        Assertions.assertEquals(expectedCells.size(), cellStore.size());
+        Map<CellPosition, CellElement> actualCells = new HashMap<>();
+        cellStore.forEach(cell -> actualCells.put(cell.cellPosition, cell));
+        Assertions.assertEquals(expectedCells, actualCells);
+    }
+
+    @Test
+    public void valuesAndBitsTest() {
+        CellStore cellStore = new CellStore();
+        Assertions.assertEquals(0.0, cellStore.getValue(99_999, 999));
+        Assertions.assertFalse(cellStore.hasValue(99_999, 999));
+        cellStore.put(99_999, 999, new CellElement(new CellPosition(99_999, 1000), "", null));
+        cellStore.setValue(99_999, 999, -0.0);
+        cellStore.setErrorMessage(99_999, 999, "error");
+        Assertions.assertEquals(-0.0, cellStore.getValue(99_999, 999));
+        Assertions.assertTrue(cellStore.hasValue(99_999, 999));
+        Assertions.assertTrue(cellStore.hasError(99_999, 999));
+        Assertions.assertEquals("error", cellStore.getErrorMessage(99_999, 999));
+        Assertions.assertFalse(cellStore.hasValue(99_998, 999));
+        cellStore.clearValue(99_999, 999);
+        Assertions.assertFalse(cellStore.hasValue(99_999, 999));
+        cellStore.setValue(99_999, 999, 5.0);
+        cellStore.remove(99_999, 999);
+        Assertions.assertEquals(0.0, cellStore.getValue(99_999, 999));
+        Assertions.assertFalse(cellStore.hasError(99_999, 999));
+        Assertions.assertEquals(0, cellStore.getTileCount());
+    }
+
+    @Test
+    public void dirtyBitsTest() {
+        CellStore cellStore = new CellStore();
+        for (int row = 0; row < 100; row++) {
+            for (int column = 0; column < 10; column++) {
+                cellStore.put(row, column, new CellElement(new CellPosition(row, column + 1), "", null));
+                cellStore.setDirty(row, column, (row + column) % 3 == 0);
+            }
+        }
+        cellStore.setDirty(1_000, 0, true);
+        Assertions.assertFalse(cellStore.isDirty(1_000, 0));
+        Assertions.assertEquals(334, cellStore.getDirtyCount());
+
+        for (int[] range : new int[][]{{5, 2, 40, 7}, {0, 0, 99_999, 999}, {17, 3, 17, 3}}) {
+            Set<CellPosition> expectedCellPositions = new HashSet<>();
+            for (int row = range[0]; row <= Math.min(range[2], 99); row++) {
+                for (int column = range[1]; column <= Math.min(range[3], 9); column++) {
+                    if ((row + column) % 3 == 0) {
+                        expectedCellPositions.add(new CellPosition(row, column + 1));
+                    }
+                }
+            }
+            Set<CellPosition> actualCellPositions = new HashSet<>();
+            cellStore.forEachDirty(range[0], range[1], range[2], range[3], cell -> actualCellPositions.add(cell.cellPosition));
+            Assertions.assertEquals(expectedCellPositions, actualCellPositions);
+        }
+
+        cellStore.remove(0, 0);
+        cellStore.setDirty(0, 3, false);
+        cellStore.setDirty(0, 3, false);
+        Assertions.assertEquals(332, cellStore.getDirtyCount());
+        Set<CellPosition> allCellPositions = new HashSet<>();
+        cellStore.forEachDirty(cell -> allCellPositions.add(cell.cellPosition));
+        Assertions.assertEquals(332, allCellPositions.size());
+    }
+
+    @Test
+    public void frozenTileSetTest() {
+        CellStore cellStore = new CellStore();
+        for (int row = 0; row < 40; row++) {
+            for (int column = 0; column < 5; column++) {
+                CellElement cell = new CellElement(new CellPosition(row, column + 1), "", null);
+                cell.text = row + "," + column;
+                cellStore.put(row, column, cell);
+                cellStore.setValue(row, column, row * column);
+            }
+        }
+        CellStore.FrozenTileSet frozenTileSet = cellStore.freeze();
+        cellStore.remove(0, 0);
+        cellStore.put(100, 0, new CellElement(new CellPosition(100, 1), "", null));
+        cellStore.setValue(5, 1, -1.0);
+        cellStore.setErrorMessage(6, 2, "error");
+        cellStore.put(7, 3, new CellElement(new CellPosition(7, 4), "", null));
+        cellStore.setDirty(8, 4, true);
+        Assertions.assertNull(cellStore.get(0, 0));
+        Assertions.assertEquals(-1.0, cellStore.getValue(5, 1));
+        Assertions.assertEquals("error", cellStore.getErrorMessage(6, 2));
+        Assertions.assertEquals("", cellStore.get(7, 3).text);
+        Assertions.assertTrue(cellStore.isDirty(8, 4));
+
+        List<List<SavedCellInfo>> tileRows = new ArrayList<>();
+        try (frozenTileSet) {
+            frozenTileSet.forEachTileRow(tileRows::add);
+        }
+        Assertions.assertEquals(3, tileRows.size());
+        Set<CellPosition> savedCellPositions = new HashSet<>();
+        for (int tileRow = 0; tileRow < tileRows.size(); tileRow++) {
+            for (SavedCellInfo savedCellInfo : tileRows.get(tileRow)) {
+                int row = savedCellInfo.cellPosition.row;
+                int column = savedCellInfo.cellPosition.column;
+                Assertions.assertEquals(tileRow, row / 16);
+                Assertions.assertEquals(row + "," + column, savedCellInfo.text);
+                Assertions.assertEquals(row * column, savedCellInfo.value);
+                Assertions.assertNull(savedCellInfo.errorMessage);
+                Assertions.assertFalse(savedCellInfo.isDirty);
+                savedCellPositions.add(savedCellInfo.cellPosition);
+            }
+        }
+        Assertions.assertEquals(200, savedCellPositions.size());
+    }
+
+    @Test
+    public void cellSourceTest() {
+        CellSource cellSource = new CellSource() {
+            @Override
+            public boolean hasCell(int row, int column) {
+                return row % 10 == 0 && column < 3;
+            }
+
+            @Override
+            public String getText(int row, int column) {
+                return column == 0 ? row + "" : "text";
+            }
+
+            @Override
+            public boolean hasValue(int row, int column) {
+                return column == 0;
+            }
+
+            @Override
+            public double getValue(int row, int column) {
+                return column == 0 ? row : 0.0;
+            }
+
+            @Override
+            public boolean hasError(int row, int column) {
+                return column == 2;
+            }
+
+            @Override
+            public String getErrorMessage(int row, int column) {
+                return column == 2 ? "error" : null;
+            }
+
+            @Override
+            public boolean isValidFormula(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public void forEachCellPosition(Consumer<CellPosition> cellPositionConsumer) {
+                for (int row = 0; row < ROWS; row += 10) {
+                    for (int column = 0; column < 3; column++) {
+                        cellPositionConsumer.accept(new CellPosition(row, column));
+                    }
+                }
+            }
+        };
+        CellStore cellStore = new CellStore(cellSource, null);
+        Assertions.assertEquals(70.0, cellStore.getValue(70, 0));
+        Assertions.assertTrue(cellStore.hasValue(70, 0));
+        Assertions.assertFalse(cellStore.hasValue(70, 1));
+        Assertions.assertTrue(cellStore.hasError(70, 2));
+        Assertions.assertEquals(0, cellStore.getTileCount());
+        Assertions.assertNull(cellStore.get(71, 0));
+        Assertions.assertEquals(0, cellStore.getTileCount());
+
+        CellElement cell = cellStore.get(80, 1);
+        Assertions.assertEquals("text", cell.text);
+        Assertions.assertEquals(new CellPosition(80, 2), cell.cellPosition);
+        Assertions.assertSame(cell, cellStore.get(80, 1));
+        Assertions.assertEquals(1, cellStore.getTileCount());
+        Assertions.assertEquals(6, cellStore.size());
+        Assertions.assertEquals(80.0, cellStore.getValue(80, 0));
+        Assertions.assertTrue(cellStore.hasError(80, 2));
+        Assertions.assertFalse(cellStore.hasError(80, 1));
+
+        cellStore.remove(80, 0);
+        cellStore.remove(80, 1);
+        cellStore.remove(80, 2);
+        Assertions.assertNull(cellStore.get(80, 0));
+        Assertions.assertFalse(cellStore.hasValue(80, 0));
+        Assertions.assertEquals(3, cellStore.size());
+        Assertions.assertEquals(1, cellStore.getTileCount());
+
+        List<SavedCellInfo> savedCellInfos = new ArrayList<>();
+        try (CellStore.FrozenTileSet frozenTileSet = cellStore.freeze()) {
+            frozenTileSet.forEachTileRow(savedCellInfos::addAll);
+        }
+        Assertions.assertEquals(29_997, savedCellInfos.size());
+        Assertions.assertEquals(new CellPosition(0, 2), savedCellInfos.get(2).cellPosition);
+        Assertions.assertEquals("error", savedCellInfos.get(2).errorMessage);
+        Assertions.assertEquals(new CellPosition(90, 0), savedCellInfos.get(24).cellPosition);
+        Assertions.assertEquals(90.0, savedCellInfos.get(24).value);
+    }
+}